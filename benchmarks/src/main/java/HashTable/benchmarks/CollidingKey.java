@@ -0,0 +1,32 @@
+package HashTable.benchmarks;
+
+/**
+ * Ключ, у которого {@link #GROUP} соседних номеров дают один hashCode.
+ * Сравнение идёт по номеру, так что таблице приходится проверять equals
+ * для каждого ключа группы.
+ */
+final class CollidingKey {
+
+    static final int GROUP = 8;
+
+    private final int id;
+
+    CollidingKey(int id) {
+        this.id = id;
+    }
+
+    @Override
+    public int hashCode() {
+        return id / GROUP;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof CollidingKey && ((CollidingKey) o).id == id;
+    }
+
+    @Override
+    public String toString() {
+        return "CollidingKey" + id;
+    }
+}
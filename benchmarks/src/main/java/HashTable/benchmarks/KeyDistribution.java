@@ -0,0 +1,59 @@
+package HashTable.benchmarks;
+
+/**
+ * Наборы ключей для замеров. Ключ зависит только от номера, разные номера
+ * дают разные ключи, поэтому {@link #keys} и {@link #missing} не пересекаются.
+ */
+public enum KeyDistribution {
+    /** 0, 1, 2, ... - лучший случай для хеширования по модулю */
+    SEQUENTIAL {
+        Object key(int i) {
+            return i;
+        }
+    },
+    /** псевдослучайные Integer */
+    RANDOM {
+        Object key(int i) {
+            return mix(i);
+        }
+    },
+    /** строки, хеш String кеширует после первого вызова */
+    STRING {
+        Object key(int i) {
+            return "key-" + Integer.toHexString(mix(i));
+        }
+    },
+    /** по {@link CollidingKey#GROUP} ключей на каждый hashCode */
+    COLLIDING {
+        Object key(int i) {
+            return new CollidingKey(i);
+        }
+    };
+
+    abstract Object key(int i);
+
+    Object[] keys(int n) {
+        return generate(0, n);
+    }
+
+    // ключи с номерами [n, 2n) - гарантированный промах
+    Object[] missing(int n) {
+        return generate(n, n);
+    }
+
+    private Object[] generate(int from, int n) {
+        Object[] keys = new Object[n];
+        for (int i = 0; i < n; i++)
+            keys[i] = key(from + i);
+        return keys;
+    }
+
+    // финализатор murmur3: перестановка на int, повторов не даёт
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        return h ^ (h >>> 16);
+    }
+}
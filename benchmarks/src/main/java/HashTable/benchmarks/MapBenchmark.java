@@ -0,0 +1,251 @@
+package HashTable.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Основные операции Map на таблицах разного размера и с разными ключами.
+ * get - одна операция за вызов; изменяющие замеры делают за вызов
+ * {@link #OPS} операций, и JMH сам делит время на OPS. Ключи берутся
+ * из заранее построенного потока по кругу, состояние готовится раз на
+ * итерацию, а не на вызов: когда ключи потока кончаются, следующая операция
+ * начинает новую таблицу, и её создание раскладывается на size вставок.
+ * Так и таблица на 10 ключей, и таблица на 10^7 меряются одинаково.
+ * Обход - один проход по таблице.
+ *
+ * Размер кучи в @Fork не задан: до 10^5 ключей хватает любой, а для 10^7
+ * нужно около 6 ГБ, и setup() без них сразу откажет, а не упадёт с
+ * OutOfMemoryError посреди замера. Полная матрица идёт несколько часов;
+ * обычно её сужают, большой размер - отдельным запуском:
+ * java -jar target/benchmarks.jar MapBenchmark.getHit -p size=1000 -p keys=STRING
+ * java -jar target/benchmarks.jar MapBenchmark -p size=10000000 -jvmArgsAppend "-Xms6g -Xmx6g"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapBenchmark {
+
+    /** операций за вызов изменяющих замеров */
+    static final int OPS = 1000;
+    // грубо: ключ и промах, перемешанная копия, записи таблиц и putAll
+    private static final long HEAP_PER_KEY = 500;
+
+    @State(Scope.Benchmark)
+    public static class Keys {
+        @Param({"10", "1000", "100000", "10000000"})
+        public int size;
+
+        @Param
+        public MapImpl impl;
+
+        @Param
+        public KeyDistribution keys;
+
+        Object[] present;
+        Object[] absent;
+        Object[] lookups; // present в перемешанном порядке, чтобы не читать память подряд
+        Map<Object,Object>[] chunks; // present по batch() записей, только для putAll
+        Map<Object,Object> map;
+
+        // порция putAll: OPS или вся таблица, если она меньше; OPS на неё делится
+        int batch() {
+            return Math.min(OPS, size);
+        }
+
+        @Setup(Level.Trial)
+        @SuppressWarnings("unchecked")
+        public void setup(BenchmarkParams params) {
+            int batch = batch();
+            if (size % batch != 0 || OPS % batch != 0)
+                throw new IllegalArgumentException("size must divide or be a multiple of " + OPS + ": " + size);
+            long heap = Runtime.getRuntime().maxMemory();
+            if (heap / HEAP_PER_KEY < size)
+                throw new IllegalStateException("size " + size + " needs about " + ((long) size * HEAP_PER_KEY >> 20)
+                        + " MB of heap, have " + (heap >> 20) + " MB; add -jvmArgsAppend -Xmx...");
+            present = keys.keys(size);
+            absent = keys.missing(size);
+            lookups = present.clone();
+            SplittableRandom rnd = new SplittableRandom(42);
+            for (int i = lookups.length - 1; i > 0; i--) {
+                int j = rnd.nextInt(i + 1);
+                Object t = lookups[i];
+                lookups[i] = lookups[j];
+                lookups[j] = t;
+            }
+            if (params.getBenchmark().endsWith(".putAll")) {
+                chunks = new Map[size / batch];
+                for (int c = 0; c < chunks.length; c++) {
+                    chunks[c] = new HashMap<>();
+                    for (int i = c * batch; i < (c + 1) * batch; i++)
+                        chunks[c].put(present[i], i);
+                }
+            }
+            map = filled(this);
+        }
+    }
+
+    static Map<Object,Object> filled(Keys k) {
+        Map<Object,Object> m = k.impl.growing();
+        for (int i = 0; i < k.size; i++)
+            m.put(k.present[i], i);
+        return m;
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int index;
+
+        int next(int n) {
+            int i = index;
+            index = i + 1 == n ? 0 : i + 1;
+            return i;
+        }
+    }
+
+    // таблица, которую наполняют по ключу; на последнем ключе потока она полна
+    @State(Scope.Thread)
+    public static class Growing {
+        Map<Object,Object> map;
+        int from;
+
+        @Setup(Level.Iteration)
+        public void setup(Keys k) {
+            from = k.size;
+        }
+
+        Map<Object,Object> create(Keys k) {
+            return k.impl.growing();
+        }
+
+        // индекс следующих n ключей в present; map после вызова - таблица для них
+        int next(Keys k, int n) {
+            if (from == k.size) {
+                map = create(k);
+                from = 0;
+            }
+            int start = from;
+            from += n;
+            return start;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Presized extends Growing {
+        @Override
+        Map<Object,Object> create(Keys k) {
+            return k.impl.presized(k.size);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Filled {
+        Map<Object,Object> map;
+
+        @Setup(Level.Iteration)
+        public void setup(Keys k) {
+            map = filled(k);
+        }
+    }
+
+    @Benchmark
+    public Object getHit(Keys k, Cursor c) {
+        return k.map.get(k.lookups[c.next(k.size)]);
+    }
+
+    @Benchmark
+    public Object getMiss(Keys k, Cursor c) {
+        return k.map.get(k.absent[c.next(k.size)]);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public Map<Object,Object> putWithResize(Keys k, Growing g) {
+        return put(k, g);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public Map<Object,Object> putPresized(Keys k, Presized p) {
+        return put(k, p);
+    }
+
+    private static Map<Object,Object> put(Keys k, Growing g) {
+        Object[] keys = k.present;
+        for (int n = 0; n < OPS; n++) {
+            int i = g.next(k, 1);
+            g.map.put(keys[i], i);
+        }
+        return g.map;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public Map<Object,Object> putAll(Keys k, Growing g) {
+        int batch = k.batch();
+        for (int n = 0; n < OPS; n += batch) {
+            int from = g.next(k, batch);
+            g.map.putAll(k.chunks[from / batch]);
+        }
+        return g.map;
+    }
+
+    // удалённые ключи сразу возвращаются, чтобы размер таблицы не менялся:
+    // операция - remove вместе с put на том же месте
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public Map<Object,Object> removeAndPut(Keys k, Filled f, Cursor c) {
+        Map<Object,Object> m = f.map;
+        Object[] keys = k.lookups;
+        for (int n = 0; n < OPS; n++) {
+            Object key = keys[c.next(k.size)];
+            m.put(key, m.remove(key));
+        }
+        return m;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public Map<Object,Object> computeIfAbsent(Keys k, Growing g) {
+        Object[] keys = k.present;
+        for (int n = 0; n < OPS; n++) {
+            int i = g.next(k, 1);
+            g.map.computeIfAbsent(keys[i], x -> x);
+        }
+        return g.map;
+    }
+
+    // только обновление значений, поэтому таблица общая для всех вызовов
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public Map<Object,Object> merge(Keys k, Cursor c) {
+        Map<Object,Object> m = k.map;
+        Object[] keys = k.lookups;
+        for (int n = 0; n < OPS; n++)
+            m.merge(keys[c.next(k.size)], 1, (a, b) -> (Integer) a + (Integer) b);
+        return m;
+    }
+
+    @Benchmark
+    public void entrySetIteration(Keys k, Blackhole bh) {
+        for (Map.Entry<Object,Object> e : k.map.entrySet()) {
+            bh.consume(e.getKey());
+            bh.consume(e.getValue());
+        }
+    }
+
+    @Benchmark
+    public void forEach(Keys k, Blackhole bh) {
+        k.map.forEach((key, value) -> {
+            bh.consume(key);
+            bh.consume(value);
+        });
+    }
+}
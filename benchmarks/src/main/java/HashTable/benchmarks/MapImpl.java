@@ -0,0 +1,65 @@
+package HashTable.benchmarks;
+
+import HashTable.CuckooHashTable;
+import HashTable.FlatHashTable;
+import HashTable.HashTable;
+import HashTable.SwissHashTable;
+
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Реализации, которые сравниваются в замерах.
+ */
+public enum MapImpl {
+    HASH_TABLE {
+        <K,V> Map<K,V> create(int capacity) {
+            return new HashTable<>(capacity);
+        }
+    },
+    /** Robin Hood на загрузке 0.9: столько же ключей в меньшем массиве */
+    FLAT_ROBIN_HOOD {
+        <K,V> Map<K,V> create(int capacity) {
+            return new FlatHashTable<>(capacity, 0.9f, true);
+        }
+    },
+    SWISS_TABLE {
+        <K,V> Map<K,V> create(int capacity) {
+            return new SwissHashTable<>(capacity);
+        }
+    },
+    CUCKOO_4_WAY {
+        <K,V> Map<K,V> create(int capacity) {
+            return new CuckooHashTable<>(capacity, 4);
+        }
+    },
+    JDK_HASHTABLE {
+        <K,V> Map<K,V> create(int capacity) {
+            return new Hashtable<>(capacity);
+        }
+    },
+    HASH_MAP {
+        <K,V> Map<K,V> create(int capacity) {
+            return new HashMap<>(capacity);
+        }
+    },
+    CONCURRENT_HASH_MAP {
+        <K,V> Map<K,V> create(int capacity) {
+            return new ConcurrentHashMap<>(capacity);
+        }
+    };
+
+    abstract <K,V> Map<K,V> create(int capacity);
+
+    // ёмкость, при которой n ключей помещаются без перехеширования
+    <K,V> Map<K,V> presized(int n) {
+        return create((int) Math.min(n / 0.75f + 1, 1 << 30));
+    }
+
+    // ёмкость по умолчанию, таблица растёт по ходу вставки
+    <K,V> Map<K,V> growing() {
+        return create(11);
+    }
+}
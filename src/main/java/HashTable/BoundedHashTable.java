@@ -0,0 +1,425 @@
+package HashTable;
+
+import java.util.ConcurrentModificationException;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Кеш поверх {@link HashTable}: не больше maximumSize записей, лишние
+ * вытесняются выбранной политикой {@link Eviction}. Каждая запись - узел
+ * с полями политики; политики работают со списками узлов, так что get
+ * добавляет к поиску в таблице O(1) работы.
+ *
+ * containsKey и forEach не считаются обращениями и порядок не меняют.
+ * Класс не потокобезопасен.
+ */
+public class BoundedHashTable<K,V> {
+
+    public enum Eviction {
+        /** вытесняется запись, к которой дольше всего не обращались */
+        LRU,
+        /**
+         * бит обращения на запись: get только ставит бит, стрелка при вытеснении
+         * сбрасывает биты и забирает первую запись без него
+         */
+        CLOCK,
+        /**
+         * W-TinyLFU: маленькое LRU-окно для новых записей и сегментированный
+         * LRU для остальных. Кандидат из окна попадает в основную часть, только
+         * если по count-min sketch к нему обращались чаще, чем к жертве
+         */
+        TINY_LFU
+    }
+
+    private final HashTable<K, Node<K,V>> nodes;
+    private final int maximumSize;
+    private final Eviction eviction;
+    private final Policy<K,V> policy;
+    private final BiConsumer<? super K, ? super V> listener;
+    private long evictions;
+
+    public BoundedHashTable(int maximumSize, Eviction eviction) {
+        this(maximumSize, eviction, null);
+    }
+
+    /**
+     * listener вызывается после вытеснения каждой записи, но не для remove и clear.
+     */
+    public BoundedHashTable(int maximumSize, Eviction eviction, BiConsumer<? super K, ? super V> listener) {
+        if (maximumSize < 0)
+            throw new IllegalArgumentException("Illegal Maximum Size: "+
+                    maximumSize);
+        this.maximumSize = maximumSize;
+        this.eviction = Objects.requireNonNull(eviction);
+        this.listener = listener;
+        // до maximumSize таблица дорастёт сама, огромный кеш сразу не размечаем
+        this.nodes = new HashTable<>(Math.min(maximumSize, 1 << 12) * 4 / 3 + 1);
+        switch (eviction) {
+            case LRU:
+                policy = new Lru<>();
+                break;
+            case CLOCK:
+                policy = new Clock<>();
+                break;
+            default:
+                policy = new TinyLfu<>(maximumSize);
+        }
+    }
+
+    public int maximumSize() {
+        return maximumSize;
+    }
+
+    public Eviction eviction() {
+        return eviction;
+    }
+
+    public long evictionCount() {
+        return evictions;
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    public boolean isEmpty() {
+        return nodes.isEmpty();
+    }
+
+    public boolean containsKey(Object key) {
+        return nodes.containsKey(key);
+    }
+
+    public V get(Object key) {
+        Node<K,V> node = nodes.get(key);
+        if (node == null) {
+            policy.onMiss(key);
+            return null;
+        }
+        policy.onAccess(node);
+        return node.value;
+    }
+
+    public V getOrDefault(Object key, V defaultValue) {
+        V value = get(key);
+        return value == null ? defaultValue : value;
+    }
+
+    public V put(K key, V value) {
+        Objects.requireNonNull(value);
+        Node<K,V> node = nodes.get(key);
+        if (node != null) {
+            V old = node.value;
+            node.value = value;
+            policy.onAccess(node);
+            return old;
+        }
+        insert(key, value);
+        return null;
+    }
+
+    public V putIfAbsent(K key, V value) {
+        Objects.requireNonNull(value);
+        Node<K,V> node = nodes.get(key);
+        if (node != null) {
+            policy.onAccess(node);
+            return node.value;
+        }
+        insert(key, value);
+        return null;
+    }
+
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        Objects.requireNonNull(mappingFunction);
+        Node<K,V> node = nodes.get(key);
+        if (node != null) {
+            policy.onAccess(node);
+            return node.value;
+        }
+        V value = mappingFunction.apply(key);
+        if (value == null)
+            return null;
+        if (nodes.containsKey(key))
+            throw new ConcurrentModificationException();
+        insert(key, value);
+        return value;
+    }
+
+    private void insert(K key, V value) {
+        Node<K,V> node = new Node<>(key, value, HashStrategy.murmur3(key.hashCode()));
+        nodes.put(key, node);
+        policy.onInsert(node);
+        while (nodes.size() > maximumSize) {
+            Node<K,V> victim = policy.victim();
+            nodes.remove(victim.key);
+            evictions++;
+            if (listener != null)
+                listener.accept(victim.key, victim.value);
+        }
+    }
+
+    public V remove(Object key) {
+        Node<K,V> node = nodes.remove(key);
+        if (node == null)
+            return null;
+        policy.onRemove(node);
+        return node.value;
+    }
+
+    public void clear() {
+        nodes.clear();
+        policy.clear();
+    }
+
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        nodes.forEach((k, node) -> action.accept(k, node.value));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        forEach((k, v) -> {
+            if (sb.length() > 1)
+                sb.append(", ");
+            sb.append(k).append('=').append(v);
+        });
+        return sb.append('}').toString();
+    }
+
+    private static final byte WINDOW = 0;
+    private static final byte PROBATION = 1;
+    private static final byte PROTECTED = 2;
+
+    private static final class Node<K,V> {
+        final K key;
+        V value;
+        final int hash; // для sketch, не для таблицы
+        Node<K,V> prev;
+        Node<K,V> next;
+        boolean referenced; // CLOCK
+        byte queue; // TINY_LFU
+
+        Node(K key, V value, int hash) {
+            this.key = key;
+            this.value = value;
+            this.hash = hash;
+        }
+    }
+
+    // кольцевой двусвязный список, head - самый старый узел
+    private static final class Ring<K,V> {
+        Node<K,V> head;
+        int size;
+
+        void addLast(Node<K,V> n) {
+            if (head == null) {
+                n.prev = n.next = n;
+                head = n;
+            } else {
+                n.prev = head.prev;
+                n.next = head;
+                head.prev.next = n;
+                head.prev = n;
+            }
+            size++;
+        }
+
+        void unlink(Node<K,V> n) {
+            if (n.next == n) {
+                head = null;
+            } else {
+                n.prev.next = n.next;
+                n.next.prev = n.prev;
+                if (head == n)
+                    head = n.next;
+            }
+            n.prev = n.next = null;
+            size--;
+        }
+
+        void moveToLast(Node<K,V> n) {
+            if (head == n)
+                head = n.next; // в кольце это и есть перенос в хвост
+            else if (head.prev != n) {
+                unlink(n);
+                addLast(n);
+            }
+        }
+
+        void clear() {
+            head = null;
+            size = 0;
+        }
+    }
+
+    private abstract static class Policy<K,V> {
+        abstract void onInsert(Node<K,V> n);
+
+        abstract void onAccess(Node<K,V> n);
+
+        abstract void onRemove(Node<K,V> n);
+
+        void onMiss(Object key) {
+        }
+
+        // выбирает жертву и убирает её из своих списков
+        abstract Node<K,V> victim();
+
+        abstract void clear();
+    }
+
+    private static final class Lru<K,V> extends Policy<K,V> {
+        private final Ring<K,V> ring = new Ring<>();
+
+        void onInsert(Node<K,V> n) {
+            ring.addLast(n);
+        }
+
+        void onAccess(Node<K,V> n) {
+            ring.moveToLast(n);
+        }
+
+        void onRemove(Node<K,V> n) {
+            ring.unlink(n);
+        }
+
+        Node<K,V> victim() {
+            Node<K,V> n = ring.head;
+            ring.unlink(n);
+            return n;
+        }
+
+        void clear() {
+            ring.clear();
+        }
+    }
+
+    // head кольца - стрелка; новый узел занимает место жертвы, прямо перед стрелкой
+    private static final class Clock<K,V> extends Policy<K,V> {
+        private final Ring<K,V> ring = new Ring<>();
+        private Node<K,V> fresh; // вставлен последним, ещё не поставлен на место жертвы
+
+        void onInsert(Node<K,V> n) {
+            ring.addLast(n);
+            fresh = n;
+        }
+
+        void onAccess(Node<K,V> n) {
+            n.referenced = true;
+        }
+
+        void onRemove(Node<K,V> n) {
+            ring.unlink(n);
+            if (fresh == n)
+                fresh = null;
+        }
+
+        // за один оборот все биты сбрасываются, так что жертва найдётся не дальше чем через круг
+        Node<K,V> victim() {
+            Node<K,V> n = ring.head;
+            while (n.referenced) {
+                n.referenced = false;
+                n = n.next;
+            }
+            ring.head = n;
+            ring.unlink(n);
+            if (fresh != null && fresh != n) {
+                ring.unlink(fresh);
+                ring.addLast(fresh);
+            }
+            fresh = null;
+            return n;
+        }
+
+        void clear() {
+            ring.clear();
+            fresh = null;
+        }
+    }
+
+    /**
+     * Окно - 1% ёмкости, основная часть делится на испытательный (20%)
+     * и защищённый (80%) LRU. Повторное обращение переводит запись из
+     * испытательного сегмента в защищённый, переполнение защищённого
+     * возвращает его старейшую запись обратно.
+     */
+    private static final class TinyLfu<K,V> extends Policy<K,V> {
+        private final Ring<K,V> window = new Ring<>();
+        private final Ring<K,V> probation = new Ring<>();
+        private final Ring<K,V> protect = new Ring<>();
+        private final int maxWindow;
+        private final int maxProtected;
+        private final FrequencySketch sketch;
+
+        TinyLfu(int maximumSize) {
+            maxWindow = maximumSize == 0 ? 0 : Math.max(1, maximumSize / 100);
+            maxProtected = (int) ((maximumSize - maxWindow) * 0.8);
+            sketch = new FrequencySketch(maximumSize);
+        }
+
+        private Ring<K,V> ring(Node<K,V> n) {
+            return n.queue == WINDOW ? window : n.queue == PROBATION ? probation : protect;
+        }
+
+        void onInsert(Node<K,V> n) {
+            sketch.ensureCapacity(window.size + probation.size + protect.size + 1);
+            sketch.increment(n.hash);
+            n.queue = WINDOW;
+            window.addLast(n);
+            while (window.size > maxWindow) {
+                Node<K,V> spilled = window.head;
+                window.unlink(spilled);
+                spilled.queue = PROBATION;
+                probation.addLast(spilled);
+            }
+        }
+
+        void onAccess(Node<K,V> n) {
+            sketch.increment(n.hash);
+            if (n.queue == PROBATION) {
+                probation.unlink(n);
+                n.queue = PROTECTED;
+                protect.addLast(n);
+                if (protect.size > maxProtected) {
+                    Node<K,V> demoted = protect.head;
+                    protect.unlink(demoted);
+                    demoted.queue = PROBATION;
+                    probation.addLast(demoted);
+                }
+            } else {
+                ring(n).moveToLast(n);
+            }
+        }
+
+        void onMiss(Object key) {
+            // промахи тоже считаются: ключ, который часто ищут, стоит пустить в кеш
+            sketch.increment(HashStrategy.murmur3(key.hashCode()));
+        }
+
+        void onRemove(Node<K,V> n) {
+            ring(n).unlink(n);
+        }
+
+        // кандидат - последний пришедший из окна в хвост испытательного сегмента
+        Node<K,V> victim() {
+            Node<K,V> victim = probation.head;
+            if (victim == null) {
+                victim = protect.head != null ? protect.head : window.head;
+            } else {
+                Node<K,V> candidate = victim.prev;
+                if (sketch.frequency(candidate.hash) <= sketch.frequency(victim.hash))
+                    victim = candidate;
+            }
+            ring(victim).unlink(victim);
+            return victim;
+        }
+
+        void clear() {
+            window.clear();
+            probation.clear();
+            protect.clear();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package HashTable;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Двоичное представление ключей и значений для {@link HashTable#writeTo}.
+ * write пишет в буфер с текущей позиции; если места не хватит, буфер бросит
+ * {@link java.nio.BufferOverflowException}, и запись повторится в большем буфере.
+ * read получает буфер, в котором осталось ровно то, что записал write.
+ */
+public interface Codec<T> {
+
+    void write(T value, ByteBuffer out);
+
+    T read(ByteBuffer in);
+
+    Codec<String> STRING = new Codec<String>() {
+        @Override
+        public void write(String value, ByteBuffer out) {
+            out.put(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public String read(ByteBuffer in) {
+            if (in.hasArray()) {
+                String s = new String(in.array(), in.arrayOffset() + in.position(), in.remaining(),
+                        StandardCharsets.UTF_8);
+                in.position(in.limit());
+                return s;
+            }
+            return StandardCharsets.UTF_8.decode(in).toString();
+        }
+    };
+
+    Codec<Integer> INTEGER = new Codec<Integer>() {
+        @Override
+        public void write(Integer value, ByteBuffer out) {
+            out.putInt(value);
+        }
+
+        @Override
+        public Integer read(ByteBuffer in) {
+            return in.getInt();
+        }
+    };
+
+    Codec<Long> LONG = new Codec<Long>() {
+        @Override
+        public void write(Long value, ByteBuffer out) {
+            out.putLong(value);
+        }
+
+        @Override
+        public Long read(ByteBuffer in) {
+            return in.getLong();
+        }
+    };
+
+    Codec<byte[]> BYTES = new Codec<byte[]>() {
+        @Override
+        public void write(byte[] value, ByteBuffer out) {
+            out.put(value);
+        }
+
+        @Override
+        public byte[] read(ByteBuffer in) {
+            byte[] b = new byte[in.remaining()];
+            in.get(b);
+            return b;
+        }
+    };
+}
@@ -0,0 +1,564 @@
+package HashTable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Потокобезопасная хеш-таблица: пространство ключей делится на сегменты,
+ * каждый сегмент - таблица с двойным хешированием, как {@link HashTable},
+ * со своей блокировкой. Чтение идёт без блокировок, запись блокирует только
+ * свой сегмент. putIfAbsent/compute/merge атомарны, функции вызываются под
+ * блокировкой сегмента. Итераторы слабо согласованы и не бросают
+ * ConcurrentModificationException.
+ */
+public class ConcurrentHashTable<K,V> extends AbstractMap<K,V> implements ConcurrentMap<K,V> {
+
+    private static final int MAX_SEGMENTS = 1 << 16;
+
+    private final Segment<K,V>[] segments;
+    private final int segmentShift;
+
+    @SuppressWarnings("unchecked")
+    public ConcurrentHashTable(int initialCapacity, float loadFactor, int concurrencyLevel) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal Capacity: "+
+                    initialCapacity);
+        if (loadFactor <= 0 || loadFactor >= 1 || Float.isNaN(loadFactor))
+            throw new IllegalArgumentException("Illegal Load: "+loadFactor);
+        if (concurrencyLevel <= 0)
+            throw new IllegalArgumentException("Illegal concurrency level: "+concurrencyLevel);
+
+        int n = SizingPolicy.POWER_OF_TWO.capacityFor(Math.min(concurrencyLevel, MAX_SEGMENTS));
+        segmentShift = 32 - Integer.numberOfTrailingZeros(n);
+        segments = (Segment<K,V>[]) new Segment<?,?>[n];
+        int perSegment = Math.max(initialCapacity / n, 3);
+        for (int i = 0; i < n; i++)
+            segments[i] = new Segment<>(perSegment, loadFactor);
+    }
+
+    public ConcurrentHashTable(int initialCapacity) {
+        this(initialCapacity, 0.75f, 16);
+    }
+
+    public ConcurrentHashTable() {
+        this(16 * 11, 0.75f, 16);
+    }
+
+    public ConcurrentHashTable(Map<? extends K, ? extends V> m) {
+        this(Math.max(2*m.size(), 16 * 11), 0.75f, 16);
+        putAll(m);
+    }
+
+    // сегмент выбирают старшие биты перемешанного хеша, ячейку - хеш целиком
+    private Segment<K,V> segmentFor(int hash) {
+        return segments[(hash * 0x9E3779B9) >>> segmentShift];
+    }
+
+    static final class Node<K,V> implements Map.Entry<K,V> {
+        final int hash;
+        final K key;
+        volatile V value;
+
+        Node(int hash, K key, V value) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        public V getValue() {
+            return value;
+        }
+
+        public V setValue(V value) {
+            throw new UnsupportedOperationException();
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?,?> e = (Map.Entry<?,?>) o;
+            return key.equals(e.getKey()) && Objects.equals(value, e.getValue());
+        }
+
+        public int hashCode() {
+            return hash ^ Objects.hashCode(value);
+        }
+
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+    private static final Node<?,?> DELETED = new Node<>(0, null, null);
+
+    // массив ячеек и его геометрия публикуются вместе одной volatile-записью
+    static final class Table {
+        final AtomicReferenceArray<Node<?,?>> slots;
+        final Geometry geometry;
+
+        Table(int capacity) {
+            slots = new AtomicReferenceArray<>(capacity);
+            geometry = SizingPolicy.PRIME.geometry(capacity);
+        }
+    }
+
+    static final class Segment<K,V> extends ReentrantLock {
+        final float loadFactor;
+        volatile Table table;
+        volatile int count;
+        int modCount; // меняется под блокировкой, ловит рекурсивные изменения в compute
+        int deleted;
+        int threshold;
+
+        Segment(int initialCapacity, float loadFactor) {
+            this.loadFactor = loadFactor;
+            setTable(new Table(SizingPolicy.PRIME.capacityFor(initialCapacity)));
+        }
+
+        private void setTable(Table t) {
+            table = t;
+            deleted = 0;
+            int capacity = t.geometry.capacity;
+            threshold = (int) Math.min(capacity * loadFactor, capacity - 1);
+        }
+
+        // индекс ключа или -(точка вставки) - 1 в таблице t
+        static int slotFor(Table t, Object key, int hash) {
+            AtomicReferenceArray<Node<?,?>> slots = t.slots;
+            Geometry g = t.geometry;
+            int index = g.hash1(hash);
+            int step = g.hash2(hash);
+            int free = -1;
+            for (int i = 0; i < g.capacity; i++) {
+                Node<?,?> e = slots.get(index);
+                if (e == null)
+                    return -(free < 0 ? index : free) - 1;
+                if (e == DELETED) {
+                    if (free < 0)
+                        free = index;
+                } else if (e.hash == hash && e.key.equals(key)) {
+                    return index;
+                }
+                index = g.next(index, step);
+            }
+            // пустую ячейку держит insert(), так что сюда не попасть; поиск всё равно только промахивается
+            return free < 0 ? -1 : -free - 1;
+        }
+
+        // без блокировки: читатель видит либо старую, либо новую таблицу целиком
+        @SuppressWarnings("unchecked")
+        Node<K,V> find(Object key, int hash) {
+            Table t = table;
+            int index = slotFor(t, key, hash);
+            return index < 0 ? null : (Node<K,V>) t.slots.get(index);
+        }
+
+        // дальше - только под блокировкой сегмента
+
+        void insert(Table t, int index, int hash, K key, V value) {
+            // без последней пустой ячейки поиск промаха не остановится; место могут вернуть только надгробия
+            if (t.slots.get(index) != DELETED && count + deleted >= t.geometry.capacity - 1) {
+                if (deleted == 0)
+                    throw new IllegalStateException("Hash table is full");
+                rehash();
+                t = table;
+                index = -slotFor(t, key, hash) - 1;
+            }
+            if (t.slots.get(index) == DELETED)
+                deleted--;
+            t.slots.set(index, new Node<>(hash, key, value));
+            modCount++;
+            count = count + 1;
+            if (count + deleted >= threshold)
+                rehash();
+        }
+
+        void removeAt(Table t, int index) {
+            @SuppressWarnings("unchecked")
+            Node<K,V> e = (Node<K,V>) t.slots.get(index);
+            t.slots.set(index, DELETED);
+            e.value = null;
+            modCount++;
+            deleted++;
+            count = count - 1;
+        }
+
+        void rehash() {
+            Table old = table;
+            int oldCapacity = old.geometry.capacity;
+            int newCapacity = count >= threshold >> 1 ? SizingPolicy.PRIME.grow(oldCapacity) : oldCapacity;
+            if (newCapacity == oldCapacity && deleted == 0) {
+                // расти некуда: заполняем до последней пустой ячейки, дальше insert() откажет
+                threshold = oldCapacity - 1;
+                return;
+            }
+            Table t = new Table(newCapacity);
+            Geometry g = t.geometry;
+            for (int i = 0; i < oldCapacity; i++) {
+                Node<?,?> e = old.slots.get(i);
+                if (e == null || e == DELETED)
+                    continue;
+                int index = g.hash1(e.hash);
+                int step = g.hash2(e.hash);
+                while (t.slots.get(index) != null)
+                    index = g.next(index, step);
+                t.slots.set(index, e);
+            }
+            setTable(t);
+            if (count >= threshold)
+                threshold = newCapacity - 1;
+        }
+
+        void clear() {
+            modCount++;
+            setTable(new Table(table.geometry.capacity));
+            count = 0;
+        }
+    }
+
+    @Override
+    public int size() {
+        long n = 0;
+        for (Segment<K,V> s : segments)
+            n += s.count;
+        return (int) Math.min(n, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (Segment<K,V> s : segments) {
+            if (s.count != 0)
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        int hash = key.hashCode();
+        return segmentFor(hash).find(key, hash) != null;
+    }
+
+    @Override
+    public V get(Object key) {
+        int hash = key.hashCode();
+        Node<K,V> e = segmentFor(hash).find(key, hash);
+        return e == null ? null : e.value;
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        V result = get(key);
+        return (null == result) ? defaultValue : result;
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        Objects.requireNonNull(value);
+        for (Segment<K,V> s : segments) {
+            AtomicReferenceArray<Node<?,?>> slots = s.table.slots;
+            for (int i = 0; i < slots.length(); i++) {
+                Node<?,?> e = slots.get(i);
+                if (e != null && e != DELETED && value.equals(e.value))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private V put(K key, V value, boolean onlyIfAbsent) {
+        Objects.requireNonNull(value);
+        int hash = key.hashCode();
+        Segment<K,V> s = segmentFor(hash);
+        s.lock();
+        try {
+            Table t = s.table;
+            int index = Segment.slotFor(t, key, hash);
+            if (index >= 0) {
+                @SuppressWarnings("unchecked")
+                Node<K,V> e = (Node<K,V>) t.slots.get(index);
+                V old = e.value;
+                if (!onlyIfAbsent)
+                    e.value = value;
+                return old;
+            }
+            s.insert(t, -index - 1, hash, key, value);
+            return null;
+        } finally {
+            s.unlock();
+        }
+    }
+
+    @Override
+    public V put(K key, V value) {
+        return put(key, value, false);
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        return put(key, value, true);
+    }
+
+    @Override
+    public V remove(Object key) {
+        int hash = key.hashCode();
+        Segment<K,V> s = segmentFor(hash);
+        s.lock();
+        try {
+            Table t = s.table;
+            int index = Segment.slotFor(t, key, hash);
+            if (index < 0)
+                return null;
+            @SuppressWarnings("unchecked")
+            V old = ((Node<K,V>) t.slots.get(index)).value;
+            s.removeAt(t, index);
+            return old;
+        } finally {
+            s.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        if (value == null)
+            return false;
+        int hash = key.hashCode();
+        Segment<K,V> s = segmentFor(hash);
+        s.lock();
+        try {
+            Table t = s.table;
+            int index = Segment.slotFor(t, key, hash);
+            if (index < 0 || !value.equals(t.slots.get(index).value))
+                return false;
+            s.removeAt(t, index);
+            return true;
+        } finally {
+            s.unlock();
+        }
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        Objects.requireNonNull(oldValue);
+        Objects.requireNonNull(newValue);
+        int hash = key.hashCode();
+        Segment<K,V> s = segmentFor(hash);
+        s.lock();
+        try {
+            Node<K,V> e = s.find(key, hash);
+            if (e == null || !oldValue.equals(e.value))
+                return false;
+            e.value = newValue;
+            return true;
+        } finally {
+            s.unlock();
+        }
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        Objects.requireNonNull(value);
+        int hash = key.hashCode();
+        Segment<K,V> s = segmentFor(hash);
+        s.lock();
+        try {
+            Node<K,V> e = s.find(key, hash);
+            if (e == null)
+                return null;
+            V old = e.value;
+            e.value = value;
+            return old;
+        } finally {
+            s.unlock();
+        }
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        Objects.requireNonNull(mappingFunction);
+        int hash = key.hashCode();
+        Node<K,V> found = segmentFor(hash).find(key, hash);
+        if (found != null) {
+            V v = found.value;
+            if (v != null)
+                return v;
+        }
+        return compute(key, (k, v) -> v != null ? v : mappingFunction.apply(k));
+    }
+
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(remappingFunction);
+        return compute(key, (k, v) -> v == null ? null : remappingFunction.apply(k, v));
+    }
+
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(remappingFunction);
+        int hash = key.hashCode();
+        Segment<K,V> s = segmentFor(hash);
+        s.lock();
+        try {
+            Table t = s.table;
+            int index = Segment.slotFor(t, key, hash);
+            @SuppressWarnings("unchecked")
+            Node<K,V> e = index >= 0 ? (Node<K,V>) t.slots.get(index) : null;
+            int mc = s.modCount;
+            V newValue = remappingFunction.apply(key, e == null ? null : e.value);
+            if (mc != s.modCount)
+                throw new IllegalStateException("Recursive update");
+            if (e != null) {
+                if (newValue == null)
+                    s.removeAt(t, index);
+                else
+                    e.value = newValue;
+            } else if (newValue != null) {
+                s.insert(t, -index - 1, hash, key, newValue);
+            }
+            return newValue;
+        } finally {
+            s.unlock();
+        }
+    }
+
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(value);
+        Objects.requireNonNull(remappingFunction);
+        return compute(key, (k, v) -> v == null ? value : remappingFunction.apply(v, value));
+    }
+
+    @Override
+    public void clear() {
+        for (Segment<K,V> s : segments) {
+            s.lock();
+            try {
+                s.clear();
+            } finally {
+                s.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        for (Map.Entry<K,V> e : entrySet())
+            action.accept(e.getKey(), e.getValue());
+    }
+
+    private Set<Map.Entry<K,V>> entrySet;
+
+    @Override
+    public Set<Map.Entry<K,V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Map.Entry<K,V>>() {
+                public Iterator<Map.Entry<K,V>> iterator() {
+                    return new WeakIterator();
+                }
+                public int size() {
+                    return ConcurrentHashTable.this.size();
+                }
+                public boolean contains(Object o) {
+                    if (!(o instanceof Map.Entry))
+                        return false;
+                    Map.Entry<?,?> e = (Map.Entry<?,?>) o;
+                    V v = get(e.getKey());
+                    return v != null && v.equals(e.getValue());
+                }
+                public boolean remove(Object o) {
+                    if (!(o instanceof Map.Entry))
+                        return false;
+                    Map.Entry<?,?> e = (Map.Entry<?,?>) o;
+                    return ConcurrentHashTable.this.remove(e.getKey(), e.getValue());
+                }
+                public void clear() {
+                    ConcurrentHashTable.this.clear();
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    /**
+     * Слабо согласованный обход: каждый сегмент читается по снимку его
+     * таблицы на момент входа в сегмент. Изменения во время обхода могут
+     * быть видны или не видны, но исключений нет.
+     */
+    private class WeakIterator implements Iterator<Map.Entry<K,V>> {
+        int segment = -1;
+        AtomicReferenceArray<Node<?,?>> slots;
+        int index;
+        Map.Entry<K,V> next;
+        Map.Entry<K,V> last;
+
+        WeakIterator() {
+            advance();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            next = null;
+            while (true) {
+                while (slots != null && index < slots.length()) {
+                    Node<K,V> e = (Node<K,V>) slots.get(index++);
+                    if (e != null && e != DELETED) {
+                        V v = e.value;
+                        if (v != null) {
+                            next = new WriteThroughEntry(e.key, v);
+                            return;
+                        }
+                    }
+                }
+                if (++segment >= segments.length)
+                    return;
+                slots = segments[segment].table.slots;
+                index = 0;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<K,V> next() {
+            if (next == null)
+                throw new NoSuchElementException();
+            last = next;
+            advance();
+            return last;
+        }
+
+        @Override
+        public void remove() {
+            if (last == null)
+                throw new IllegalStateException();
+            ConcurrentHashTable.this.remove(last.getKey());
+            last = null;
+        }
+    }
+
+    private class WriteThroughEntry extends AbstractMap.SimpleEntry<K,V> {
+        WriteThroughEntry(K key, V value) {
+            super(key, value);
+        }
+
+        @Override
+        public V setValue(V value) {
+            Objects.requireNonNull(value);
+            put(getKey(), value);
+            return super.setValue(value);
+        }
+    }
+}
@@ -0,0 +1,568 @@
+package HashTable;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * Кукушкина хеш-таблица: у каждого ключа ровно две корзины, выбранные двумя
+ * независимыми перемешиваниями hashCode() ({@link HashStrategy#murmur3} и
+ * {@link HashStrategy#xxHash}). В корзине ways ячеек подряд, поэтому get
+ * смотрит не больше 2 * ways ячеек и маленький тайник - без пробирования
+ * и без зависимости от загрузки.
+ *
+ * put, если обе корзины заняты, выселяет случайного жильца в его другую
+ * корзину, тот - следующего, и так не дольше {@link #maxKicks()} шагов:
+ * более длинная цепочка считается циклом. Последний выселенный уходит
+ * в тайник, а если и тот полон - таблица растёт.
+ *
+ * Ключи с равным hashCode() попадают в одни и те же две корзины при любом
+ * размере, рост их не разводит. Когда обе корзины и тайник заняты, такой
+ * ключ уходит в запасную {@link HashTable}: она держит длинные цепочки
+ * равных хешей деревом, а таблица и тайник от них не растут.
+ */
+public class CuckooHashTable<K,V> extends AbstractMap<K,V> {
+
+    private static final int STASH = 4;
+
+    private final int ways;
+    private final float loadFactor;
+    private Object[] keys;
+    private Object[] values;
+    private int[] hashes; // hashCode() ключа, из него обе корзины
+    private int mask; // корзин - степень двойки
+    private int threshold;
+    private Object[] stashKeys;
+    private Object[] stashValues;
+    private int[] stashHashes;
+    private int stashCount;
+    private HashTable<Object,Object> collisions; // ключи, которые не развести ростом
+    private int count; // вместе с collisions
+    private int countMod; // сколько раз таблицу изменяли
+    private int seed = 0x9E3779B9; // для выбора выселяемого
+    // запись, оставшаяся без места после неудачной цепочки
+    private Object carryKey;
+    private Object carryValue;
+    private int carryHash;
+
+    /** ways - ячеек в корзине: 1, 2, 4 или 8 */
+    public CuckooHashTable(int initialCapacity, int ways) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal Capacity: "+
+                    initialCapacity);
+        if (ways != 1 && ways != 2 && ways != 4 && ways != 8)
+            throw new IllegalArgumentException("Illegal Ways: "+ways);
+        this.ways = ways;
+        // до какой загрузки цепочки выселений остаются короткими
+        this.loadFactor = ways == 1 ? 0.45f : ways == 2 ? 0.8f : ways == 4 ? 0.9f : 0.95f;
+        long buckets = Math.max(1, (long) (initialCapacity / loadFactor) / ways + 1);
+        if (buckets > 1 << 28)
+            throw new IllegalArgumentException("Capacity too large: " + initialCapacity);
+        allocate(buckets == 1 ? 1 : Integer.highestOneBit((int) buckets - 1) << 1, STASH);
+    }
+
+    public CuckooHashTable(int initialCapacity) {
+        this(initialCapacity, 4);
+    }
+
+    public CuckooHashTable() {
+        this(11, 4);
+    }
+
+    public CuckooHashTable(Map<? extends K, ? extends V> m) {
+        this(m.size(), 4);
+        putAll(m);
+    }
+
+    private void allocate(int buckets, int stash) {
+        keys = new Object[buckets * ways];
+        values = new Object[buckets * ways];
+        hashes = new int[buckets * ways];
+        mask = buckets - 1;
+        threshold = (int) Math.min((long) (buckets * ways * loadFactor), buckets * ways);
+        stashKeys = new Object[stash];
+        stashValues = new Object[stash];
+        stashHashes = new int[stash];
+        stashCount = 0;
+    }
+
+    private int collisionCount() {
+        return collisions == null ? 0 : collisions.size();
+    }
+
+    public int capacity() {
+        return keys.length;
+    }
+
+    public int ways() {
+        return ways;
+    }
+
+    public int stashSize() {
+        return stashCount;
+    }
+
+    /** записи в запасной таблице для ключей с равным hashCode() */
+    public int collisionSize() {
+        return collisionCount();
+    }
+
+    // порядка log2 ёмкости: у случайного графа корзин цепочки длиннее почти всегда циклы
+    public int maxKicks() {
+        return 16 + 4 * (32 - Integer.numberOfLeadingZeros(keys.length));
+    }
+
+    private int bucket1(int h) {
+        return (HashStrategy.murmur3(h) & mask) * ways;
+    }
+
+    private int bucket2(int h) {
+        return (HashStrategy.xxHash(h) & mask) * ways;
+    }
+
+    private int findIn(int bucket, Object key, int h) {
+        Object[] ks = keys;
+        int[] hs = hashes;
+        for (int i = bucket, end = bucket + ways; i < end; i++) {
+            Object k = ks[i];
+            if (k != null && hs[i] == h && (k == key || k.equals(key)))
+                return i;
+        }
+        return -1;
+    }
+
+    private int stashIndexOf(Object key, int h) {
+        for (int i = 0; i < stashCount; i++) {
+            if (stashHashes[i] == h && stashKeys[i].equals(key))
+                return i;
+        }
+        return -1;
+    }
+
+    // ячейка ключа или -1, тайник не смотрит
+    private int indexOf(Object key, int h) {
+        int index = findIn(bucket1(h), key, h);
+        return index >= 0 ? index : findIn(bucket2(h), key, h);
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        int h = key.hashCode();
+        return indexOf(key, h) >= 0 || (stashCount > 0 && stashIndexOf(key, h) >= 0)
+                || (collisionCount() > 0 && collisions.containsKey(key));
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        Objects.requireNonNull(value);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null && values[i].equals(value))
+                return true;
+        }
+        for (int i = 0; i < stashCount; i++) {
+            if (stashValues[i].equals(value))
+                return true;
+        }
+        return collisionCount() > 0 && collisions.containsValue(value);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        int h = key.hashCode();
+        int index = indexOf(key, h);
+        if (index >= 0)
+            return (V) values[index];
+        if (stashCount > 0) {
+            index = stashIndexOf(key, h);
+            if (index >= 0)
+                return (V) stashValues[index];
+        }
+        return collisionCount() > 0 ? (V) collisions.get(key) : null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V put(K key, V value) {
+        if (value == null)
+            throw new NullPointerException();
+
+        int h = key.hashCode();
+        int index = indexOf(key, h);
+        if (index >= 0) {
+            V old = (V) values[index];
+            values[index] = value;
+            return old;
+        }
+        if (stashCount > 0 && (index = stashIndexOf(key, h)) >= 0) {
+            V old = (V) stashValues[index];
+            stashValues[index] = value;
+            return old;
+        }
+        if (collisionCount() > 0 && collisions.containsKey(key))
+            return (V) collisions.put(key, value);
+        if (count - collisionCount() >= threshold)
+            resize(keys.length / ways << 1);
+        Object k = key;
+        Object v = value;
+        while (!place(k, v, h)) {
+            k = carryKey;
+            v = carryValue;
+            h = carryHash;
+            resize(keys.length / ways << 1);
+        }
+        count++;
+        countMod++;
+        return null;
+    }
+
+    private int freeIn(int bucket) {
+        Object[] ks = keys;
+        for (int i = bucket, end = bucket + ways; i < end; i++) {
+            if (ks[i] == null)
+                return i;
+        }
+        return -1;
+    }
+
+    private void set(int index, Object key, Object value, int h) {
+        keys[index] = key;
+        values[index] = value;
+        hashes[index] = h;
+    }
+
+    /**
+     * Ставит новую запись в одну из её корзин, при необходимости по цепочке
+     * выселений. Если цепочка не сошлась, последний выселенный идёт в тайник;
+     * false - тайник полон, запись без места лежит в carry*.
+     */
+    private boolean place(Object key, Object value, int h) {
+        int b1 = bucket1(h);
+        int free = freeIn(b1);
+        if (free < 0) {
+            int b2 = bucket2(h);
+            free = freeIn(b2);
+            if (free < 0) {
+                // выселяем из случайной из двух корзин
+                int bucket = nextRandom() < 0 ? b1 : b2;
+                for (int kicks = maxKicks(); kicks > 0; kicks--) {
+                    int victim = bucket + (nextRandom() & (ways - 1));
+                    Object k = keys[victim];
+                    Object v = values[victim];
+                    int vh = hashes[victim];
+                    set(victim, key, value, h);
+                    key = k;
+                    value = v;
+                    h = vh;
+                    int home = bucket1(h);
+                    bucket = home == bucket ? bucket2(h) : home;
+                    free = freeIn(bucket);
+                    if (free >= 0)
+                        break;
+                }
+                if (free < 0)
+                    return stash(key, value, h);
+            }
+        }
+        set(free, key, value, h);
+        return true;
+    }
+
+    /**
+     * Тайник фиксированного размера. Если он полон, а обе корзины записи
+     * заняты ключами с тем же hashCode(), рост не поможет - запись уходит
+     * в collisions; иначе false, и таблица растёт.
+     */
+    private boolean stash(Object key, Object value, int h) {
+        if (stashCount == stashKeys.length) {
+            if (sameHash(bucket1(h), h) && sameHash(bucket2(h), h)) {
+                if (collisions == null)
+                    collisions = new HashTable<>();
+                collisions.put(key, value);
+                return true;
+            }
+            carryKey = key;
+            carryValue = value;
+            carryHash = h;
+            return false;
+        }
+        stashKeys[stashCount] = key;
+        stashValues[stashCount] = value;
+        stashHashes[stashCount] = h;
+        stashCount++;
+        return true;
+    }
+
+    private boolean sameHash(int bucket, int h) {
+        for (int i = bucket, end = bucket + ways; i < end; i++) {
+            if (keys[i] == null || hashes[i] != h)
+                return false;
+        }
+        return true;
+    }
+
+    private int nextRandom() {
+        int x = seed;
+        x ^= x << 13;
+        x ^= x >>> 17;
+        x ^= x << 5;
+        return seed = x;
+    }
+
+    // если и новая таблица не вместила всех, удваиваем ещё раз
+    private void resize(int buckets) {
+        Object[] oldKeys = keys;
+        Object[] oldValues = values;
+        int[] oldHashes = hashes;
+        Object[] oldStashKeys = stashKeys;
+        Object[] oldStashValues = stashValues;
+        int[] oldStashHashes = stashHashes;
+        int oldStashCount = stashCount;
+        int oldCollisions = collisionCount();
+        countMod++;
+        retry:
+        for (;;) {
+            if (buckets > 1 << 28)
+                throw new IllegalStateException("Hash table is full");
+            if (collisionCount() > oldCollisions) {
+                // прошлая попытка успела отправить часть записей в collisions
+                for (Object k : oldKeys) {
+                    if (k != null)
+                        collisions.remove(k);
+                }
+                for (int i = 0; i < oldStashCount; i++)
+                    collisions.remove(oldStashKeys[i]);
+            }
+            allocate(buckets, STASH);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null && !place(oldKeys[i], oldValues[i], oldHashes[i])) {
+                    buckets <<= 1;
+                    continue retry;
+                }
+            }
+            for (int i = 0; i < oldStashCount; i++) {
+                if (!place(oldStashKeys[i], oldStashValues[i], oldStashHashes[i])) {
+                    buckets <<= 1;
+                    continue retry;
+                }
+            }
+            return;
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        int h = key.hashCode();
+        int index = indexOf(key, h);
+        if (index >= 0)
+            return removeAt(index);
+        if (stashCount > 0 && (index = stashIndexOf(key, h)) >= 0)
+            return removeStash(index);
+        if (collisionCount() > 0 && collisions.containsKey(key))
+            return removeCollision(key);
+        return null;
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        Object current = get(key);
+        if (current != null && current.equals(value)) {
+            remove(key);
+            return true;
+        }
+        return false;
+    }
+
+    // надгробия не нужны: ключ ищется только в своих двух корзинах
+    @SuppressWarnings("unchecked")
+    private V removeAt(int index) {
+        V oldValue = (V) values[index];
+        keys[index] = null;
+        values[index] = null;
+        count--;
+        countMod++;
+        return oldValue;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V removeStash(int index) {
+        V oldValue = (V) stashValues[index];
+        int last = --stashCount;
+        stashKeys[index] = stashKeys[last];
+        stashValues[index] = stashValues[last];
+        stashHashes[index] = stashHashes[last];
+        stashKeys[last] = null;
+        stashValues[last] = null;
+        count--;
+        countMod++;
+        return oldValue;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V removeCollision(Object key) {
+        V oldValue = (V) collisions.remove(key);
+        count--;
+        countMod++;
+        return oldValue;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(keys, null);
+        Arrays.fill(values, null);
+        Arrays.fill(stashKeys, null);
+        Arrays.fill(stashValues, null);
+        stashCount = 0;
+        collisions = null;
+        count = 0;
+        countMod++;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        final int expectedCountMod = countMod;
+        Object[] ks = keys;
+        Object[] vs = values;
+        for (int i = 0; i < ks.length; i++) {
+            if (ks[i] != null) {
+                action.accept((K) ks[i], (V) vs[i]);
+                if (expectedCountMod != countMod)
+                    throw new ConcurrentModificationException();
+            }
+        }
+        for (int i = stashCount; i-- > 0; ) {
+            action.accept((K) stashKeys[i], (V) stashValues[i]);
+            if (expectedCountMod != countMod)
+                throw new ConcurrentModificationException();
+        }
+        if (collisionCount() > 0) {
+            for (Map.Entry<Object,Object> e : collisions.entrySet()) {
+                action.accept((K) e.getKey(), (V) e.getValue());
+                if (expectedCountMod != countMod)
+                    throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    private Set<Map.Entry<K,V>> entrySet;
+
+    @Override
+    public Set<Map.Entry<K,V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Map.Entry<K,V>>() {
+                public Iterator<Map.Entry<K,V>> iterator() {
+                    return new SlotIterator();
+                }
+                public int size() {
+                    return count;
+                }
+                public boolean contains(Object o) {
+                    if (!(o instanceof Map.Entry))
+                        return false;
+                    Map.Entry<?,?> e = (Map.Entry<?,?>) o;
+                    Object value = get(e.getKey());
+                    return value != null && value.equals(e.getValue());
+                }
+                public boolean remove(Object o) {
+                    if (!(o instanceof Map.Entry))
+                        return false;
+                    Map.Entry<?,?> e = (Map.Entry<?,?>) o;
+                    return CuckooHashTable.this.remove(e.getKey(), e.getValue());
+                }
+                public void clear() {
+                    CuckooHashTable.this.clear();
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    // запись, собранная при обходе; setValue пишет обратно в таблицу
+    private class EntryView extends AbstractMap.SimpleEntry<K,V> {
+        EntryView(K key, V value) {
+            super(key, value);
+        }
+
+        @Override
+        public V setValue(V value) {
+            if (value == null)
+                throw new NullPointerException();
+            put(getKey(), value);
+            return super.setValue(value);
+        }
+    }
+
+    /**
+     * Сначала ячейки, потом тайник с конца: удаление из тайника переносит
+     * на место удалённой последнюю запись, а её обход уже прошёл.
+     * Последними идут collisions через их собственный итератор.
+     */
+    private class SlotIterator implements Iterator<Map.Entry<K,V>> {
+        int next;
+        int stashNext = stashCount;
+        Iterator<Map.Entry<Object,Object>> rest;
+        int last = -1;
+        int lastIn; // 0 - ячейки, 1 - тайник, 2 - collisions
+        int expectedCountMod = countMod;
+
+        @Override
+        public boolean hasNext() {
+            Object[] ks = keys;
+            while (next < ks.length && ks[next] == null)
+                next++;
+            if (next < ks.length || stashNext > 0)
+                return true;
+            if (rest == null && collisionCount() > 0)
+                rest = collisions.entrySet().iterator();
+            return rest != null && rest.hasNext();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Map.Entry<K,V> next() {
+            if (countMod != expectedCountMod)
+                throw new ConcurrentModificationException();
+            if (!hasNext())
+                throw new NoSuchElementException("CuckooHashTable Iterator");
+            if (next < keys.length) {
+                last = next++;
+                lastIn = 0;
+                return new EntryView((K) keys[last], (V) values[last]);
+            }
+            if (stashNext > 0) {
+                last = --stashNext;
+                lastIn = 1;
+                return new EntryView((K) stashKeys[last], (V) stashValues[last]);
+            }
+            Map.Entry<Object,Object> e = rest.next();
+            last = 0;
+            lastIn = 2;
+            return new EntryView((K) e.getKey(), (V) e.getValue());
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0)
+                throw new IllegalStateException("CuckooHashTable Iterator");
+            if (countMod != expectedCountMod)
+                throw new ConcurrentModificationException();
+            if (lastIn == 0) {
+                removeAt(last);
+            } else if (lastIn == 1) {
+                removeStash(last);
+            } else {
+                rest.remove();
+                count--;
+                countMod++;
+            }
+            last = -1;
+            expectedCountMod = countMod;
+        }
+    }
+}
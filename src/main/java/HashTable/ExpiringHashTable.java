@@ -0,0 +1,311 @@
+package HashTable;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * {@link HashTable}, записи которого исчезают через заданное время.
+ * Просроченная запись не видна сразу: get и containsKey проверяют срок сами.
+ * Из таблицы её убирает иерархическое колесо таймеров; каждая операция
+ * продвигает колесо и удаляет не больше {@link #SLICE} записей, так что
+ * полного обхода таблицы не бывает.
+ *
+ * size() - оценка сверху: в ней могут быть просроченные, ещё не убранные записи.
+ * Класс не потокобезопасен.
+ */
+public class ExpiringHashTable<K,V> {
+
+    /** сколько узлов колеса разбирает одна операция */
+    static final int SLICE = 16;
+
+    private static final long NEVER = Long.MAX_VALUE;
+
+    private final HashTable<K, Node<K,V>> nodes = new HashTable<>();
+    private final TimerWheel<K,V> wheel;
+    private final long defaultTtl;
+    private final LongSupplier clock;
+
+    /** записи без срока, пока он не задан в put */
+    public ExpiringHashTable() {
+        this(0, TimeUnit.NANOSECONDS);
+    }
+
+    /** defaultTtl 0 - записи из put(key, value) не истекают */
+    public ExpiringHashTable(long defaultTtl, TimeUnit unit) {
+        this(defaultTtl, unit, System::nanoTime);
+    }
+
+    /** clock - источник времени в наносекундах, как System.nanoTime() */
+    public ExpiringHashTable(long defaultTtl, TimeUnit unit, LongSupplier clock) {
+        this.defaultTtl = toNanos(defaultTtl, unit);
+        this.clock = Objects.requireNonNull(clock);
+        this.wheel = new TimerWheel<>(clock.getAsLong());
+    }
+
+    private static long toNanos(long ttl, TimeUnit unit) {
+        if (ttl < 0)
+            throw new IllegalArgumentException("Illegal TTL: "+ttl);
+        return unit.toNanos(ttl);
+    }
+
+    private static boolean expired(Node<?,?> node, long now) {
+        return node.expiresAt != NEVER && node.expiresAt - now <= 0;
+    }
+
+    // срок в наносекундах с насыщением, 0 - без срока
+    private static long deadline(long now, long ttl) {
+        if (ttl == 0)
+            return NEVER;
+        long at = now + ttl;
+        return at - now != ttl || at == NEVER ? NEVER - 1 : at;
+    }
+
+    // продвигает колесо и убирает порцию просроченных записей
+    private long maintain() {
+        long now = clock.getAsLong();
+        wheel.advance(now);
+        for (int i = 0; i < SLICE; i++) {
+            Node<K,V> node = wheel.poll();
+            if (node == null)
+                break;
+            if (expired(node, now))
+                nodes.remove(node.key);
+            else
+                wheel.schedule(node);
+        }
+        return now;
+    }
+
+    public long defaultTtl(TimeUnit unit) {
+        return unit.convert(defaultTtl, TimeUnit.NANOSECONDS);
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    public boolean isEmpty() {
+        return nodes.isEmpty();
+    }
+
+    public V get(Object key) {
+        long now = maintain();
+        Node<K,V> node = nodes.get(key);
+        if (node == null)
+            return null;
+        if (expired(node, now)) {
+            removeNode(node);
+            return null;
+        }
+        return node.value;
+    }
+
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    /** время до истечения записи, -1 без срока, null - записи нет */
+    public Long getTtl(Object key, TimeUnit unit) {
+        long now = maintain();
+        Node<K,V> node = nodes.get(key);
+        if (node == null || expired(node, now))
+            return null;
+        return node.expiresAt == NEVER ? -1L : unit.convert(node.expiresAt - now, TimeUnit.NANOSECONDS);
+    }
+
+    public V put(K key, V value) {
+        return put(key, value, defaultTtl, TimeUnit.NANOSECONDS);
+    }
+
+    /** ttl 0 - запись не истекает; возвращает прежнее непросроченное значение */
+    public V put(K key, V value, long ttl, TimeUnit unit) {
+        Objects.requireNonNull(value);
+        long nanos = toNanos(ttl, unit);
+        long now = maintain();
+        Node<K,V> node = nodes.get(key);
+        V old = null;
+        if (node == null) {
+            node = new Node<>(key);
+            nodes.put(key, node);
+        } else {
+            if (!expired(node, now))
+                old = node.value;
+            wheel.unlink(node);
+        }
+        node.value = value;
+        node.expiresAt = deadline(now, nanos);
+        if (node.expiresAt != NEVER)
+            wheel.schedule(node);
+        return old;
+    }
+
+    public V remove(Object key) {
+        long now = maintain();
+        Node<K,V> node = nodes.get(key);
+        if (node == null)
+            return null;
+        removeNode(node);
+        return expired(node, now) ? null : node.value;
+    }
+
+    private void removeNode(Node<K,V> node) {
+        nodes.remove(node.key);
+        wheel.unlink(node);
+    }
+
+    /** обход без просроченных записей; колесо при этом не двигается */
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        long now = clock.getAsLong();
+        nodes.forEach((k, node) -> {
+            if (!expired(node, now))
+                action.accept(k, node.value);
+        });
+    }
+
+    /**
+     * Убирает все записи, чей срок уже прошёл. Работа пропорциональна
+     * числу созревших узлов колеса, а не размеру таблицы.
+     */
+    public void cleanUp() {
+        while (true) {
+            maintain();
+            if (wheel.pendingIsEmpty())
+                return;
+        }
+    }
+
+    public void clear() {
+        nodes.clear();
+        wheel.clear();
+    }
+
+    private static final class Node<K,V> {
+        final K key;
+        V value;
+        long expiresAt = NEVER;
+        Node<K,V> prev; // null - узел не в колесе
+        Node<K,V> next;
+
+        Node(K key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * Иерархическое колесо: 6 уровней по 64 корзины, корзина уровня i
+     * покрывает 2^(20 + 6i) нс - от ~1 мс до ~13 дней; уровень целиком -
+     * в 64 раза больше. Узел лежит на уровне, где до его срока меньше
+     * оборота, в корзине своего срока. При продвижении времени прошедшие
+     * корзины целиком за O(1) пересаживаются в очередь pending, а оттуда
+     * узлы разбираются порциями: просроченные удаляются, остальные
+     * спускаются на нижний уровень.
+     */
+    private static final class TimerWheel<K,V> {
+        private static final int LEVELS = 6;
+        private static final int BUCKETS = 64;
+        private static final int BASE_SHIFT = 20;
+
+        private final Node<K,V>[][] wheel;
+        private final Node<K,V> pending = sentinel();
+        private long nanos; // время последнего продвижения
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        TimerWheel(long now) {
+            nanos = now;
+            wheel = new Node[LEVELS][BUCKETS];
+            for (Node<K,V>[] level : wheel) {
+                for (int i = 0; i < BUCKETS; i++)
+                    level[i] = sentinel();
+            }
+        }
+
+        private static <K,V> Node<K,V> sentinel() {
+            Node<K,V> s = new Node<>(null);
+            s.prev = s.next = s;
+            return s;
+        }
+
+        private static int shift(int level) {
+            return BASE_SHIFT + 6 * level;
+        }
+
+        void schedule(Node<K,V> node) {
+            long delay = node.expiresAt - nanos;
+            Node<K,V> bucket;
+            if (delay <= 0) {
+                bucket = pending;
+            } else {
+                int level = 0;
+                while (level < LEVELS - 1 && delay >= 1L << shift(level + 1))
+                    level++;
+                // дальше последнего уровня - в его самую позднюю корзину, оттуда узел спустится заново
+                long at = Math.min(node.expiresAt - nanos, (1L << shift(LEVELS)) - (1L << shift(LEVELS - 1))) + nanos;
+                bucket = wheel[level][(int) ((at >>> shift(level)) & (BUCKETS - 1))];
+            }
+            node.prev = bucket.prev;
+            node.next = bucket;
+            bucket.prev.next = node;
+            bucket.prev = node;
+        }
+
+        void unlink(Node<K,V> node) {
+            if (node.prev == null)
+                return;
+            node.prev.next = node.next;
+            node.next.prev = node.prev;
+            node.prev = node.next = null;
+        }
+
+        // пересаживает прошедшие корзины в pending; текущая корзина пройдёт ещё раз на следующем тике
+        void advance(long now) {
+            long previous = nanos;
+            if (now - previous <= 0)
+                return;
+            nanos = now;
+            for (int level = 0; level < LEVELS; level++) {
+                long prevTicks = previous >> shift(level);
+                long delta = (now >> shift(level)) - prevTicks;
+                if (delta <= 0)
+                    break;
+                long buckets = Math.min(delta + 1, BUCKETS);
+                for (long t = 0; t < buckets; t++)
+                    splice(wheel[level][(int) ((prevTicks + t) & (BUCKETS - 1))]);
+            }
+        }
+
+        private void splice(Node<K,V> bucket) {
+            if (bucket.next == bucket)
+                return;
+            Node<K,V> first = bucket.next;
+            Node<K,V> last = bucket.prev;
+            first.prev = pending.prev;
+            pending.prev.next = first;
+            last.next = pending;
+            pending.prev = last;
+            bucket.prev = bucket.next = bucket;
+        }
+
+        Node<K,V> poll() {
+            Node<K,V> node = pending.next;
+            if (node == pending)
+                return null;
+            unlink(node);
+            return node;
+        }
+
+        boolean pendingIsEmpty() {
+            return pending.next == pending;
+        }
+
+        void clear() {
+            pending.prev = pending.next = pending;
+            for (Node<K,V>[] level : wheel) {
+                for (Node<K,V> bucket : level)
+                    bucket.prev = bucket.next = bucket;
+            }
+        }
+    }
+}
@@ -0,0 +1,475 @@
+package HashTable;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+
+/**
+ * Хеш-таблица без объектов-записей: ключи, значения и хеши лежат в трёх
+ * параллельных массивах. Открытая адресация с линейным пробированием,
+ * удаление сдвигом назад, поэтому надгробий нет. Объекты {@link Map.Entry}
+ * создаются только при обходе {@link #entrySet()}.
+ *
+ * В режиме Robin Hood вставка отбирает ячейку у записи, которая стоит ближе
+ * к своей домашней ячейке, чем вставляемая. Расстояния от дома выравниваются,
+ * поиск промаха останавливается, как только встретит запись "богаче" себя,
+ * и таблица держит коэффициент загрузки 0.9 и выше без длинного хвоста.
+ */
+public class FlatHashTable<K,V> extends AbstractMap<K,V> {
+
+    private Object[] keys;
+    private Object[] values;
+    private int[] hashes;
+    private int count;
+    private final float loadFactor;
+    private int countMod; // сколько раз таблицу изменяли
+    private int threshold; // порог для перехеширования
+    private Geometry geometry;
+    private final boolean robinHood;
+
+    public FlatHashTable(int initialCapacity, float loadFactor) {
+        this(initialCapacity, loadFactor, false);
+    }
+
+    public FlatHashTable(int initialCapacity, float loadFactor, boolean robinHood) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal Capacity: "+
+                    initialCapacity);
+        if (loadFactor <= 0 || loadFactor >= 1 || Float.isNaN(loadFactor))
+            throw new IllegalArgumentException("Illegal Load: "+loadFactor);
+
+        this.loadFactor = loadFactor;
+        this.robinHood = robinHood;
+        // сдвиг назад считает расстояния маской, поэтому ёмкость - степень двойки
+        allocate(SizingPolicy.POWER_OF_TWO.capacityFor(initialCapacity));
+    }
+
+    public FlatHashTable(int initialCapacity) {
+        this(initialCapacity, 0.75f);
+    }
+
+    public FlatHashTable() {
+        this(11, 0.75f);
+    }
+
+    public FlatHashTable(Map<? extends K, ? extends V> m) {
+        this(Math.max(2*m.size(), 11), 0.75f);
+        putAll(m);
+    }
+
+    private void allocate(int capacity) {
+        keys = new Object[capacity];
+        values = new Object[capacity];
+        hashes = new int[capacity];
+        geometry = SizingPolicy.POWER_OF_TWO.geometry(capacity);
+        threshold = (int) Math.min(capacity * loadFactor, capacity - 1);
+    }
+
+    static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    public Geometry geometry() {
+        return geometry;
+    }
+
+    public boolean isRobinHood() {
+        return robinHood;
+    }
+
+    /**
+     * Индекс ключа или -(точка вставки) - 1. Без Robin Hood точка вставки -
+     * первая пустая ячейка, с ним - первая ячейка, чья запись ближе к дому,
+     * чем искомый ключ был бы здесь: дальше ключа быть не может.
+     */
+    private int slotFor(Object key, int hash) {
+        Object[] ks = keys;
+        int[] hs = hashes;
+        int mask = ks.length - 1;
+        int dist = 0;
+        for (int index = geometry.hash1(hash); ; index = (index + 1) & mask, dist++) {
+            Object k = ks[index];
+            if (k == null)
+                return -index - 1;
+            if (hs[index] == hash && (k == key || k.equals(key)))
+                return index;
+            if (robinHood && ((index - hs[index]) & mask) < dist)
+                return -index - 1;
+        }
+    }
+
+    // ставит запись в ячейку index, вытесняя дальше по цепочке тех, кто ближе к дому
+    private void insertAt(int index, Object key, Object value, int hash) {
+        Object[] ks = keys;
+        Object[] vs = values;
+        int[] hs = hashes;
+        int mask = ks.length - 1;
+        int dist = (index - hash) & mask;
+        while (ks[index] != null) {
+            int residentDist = (index - hs[index]) & mask;
+            if (residentDist < dist) {
+                Object k = ks[index];
+                Object v = vs[index];
+                int h = hs[index];
+                ks[index] = key;
+                vs[index] = value;
+                hs[index] = hash;
+                key = k;
+                value = v;
+                hash = h;
+                dist = residentDist;
+            }
+            index = (index + 1) & mask;
+            dist++;
+        }
+        ks[index] = key;
+        vs[index] = value;
+        hs[index] = hash;
+    }
+
+    private int indexOf(Object key) {
+        int index = slotFor(key, spread(key.hashCode()));
+        return index < 0 ? -1 : index;
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        Objects.requireNonNull(value);
+        Object[] vs = values;
+        for (int i = vs.length; i-- > 0; ) {
+            if (vs[i] != null && vs[i].equals(value))
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        int index = indexOf(key);
+        return index < 0 ? null : (V) values[index];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V put(K key, V value) {
+        if (value == null)
+            throw new NullPointerException();
+
+        int hash = spread(key.hashCode());
+        int index = slotFor(key, hash);
+        if (index >= 0) {
+            V old = (V) values[index];
+            values[index] = value;
+            return old;
+        }
+        index = -index - 1;
+        if (robinHood) {
+            insertAt(index, key, value, hash);
+        } else {
+            keys[index] = key;
+            values[index] = value;
+            hashes[index] = hash;
+        }
+        countMod++;
+        if (++count > threshold)
+            rehash();
+        return null;
+    }
+
+    protected void rehash() {
+        Object[] oldKeys = keys;
+        Object[] oldValues = values;
+        int[] oldHashes = hashes;
+        int newCapacity = SizingPolicy.POWER_OF_TWO.grow(oldKeys.length);
+        if (newCapacity == oldKeys.length) {
+            if (count >= oldKeys.length - 1)
+                throw new IllegalStateException("Hash table is full");
+            return;
+        }
+        allocate(newCapacity);
+        countMod++;
+
+        Object[] ks = keys;
+        int mask = ks.length - 1;
+        for (int i = oldKeys.length; i-- > 0; ) {
+            if (oldKeys[i] == null)
+                continue;
+            if (robinHood) {
+                insertAt(geometry.hash1(oldHashes[i]), oldKeys[i], oldValues[i], oldHashes[i]);
+                continue;
+            }
+            int index = geometry.hash1(oldHashes[i]);
+            while (ks[index] != null)
+                index = (index + 1) & mask;
+            ks[index] = oldKeys[i];
+            values[index] = oldValues[i];
+            hashes[index] = oldHashes[i];
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        int index = indexOf(key);
+        return index < 0 ? null : removeAt(index);
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        int index = indexOf(key);
+        if (index >= 0 && values[index].equals(value)) {
+            removeAt(index);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Удаляет запись и сдвигает назад хвост кластера: запись переезжает в дыру,
+     * если её домашняя ячейка не лежит между дырой и текущим положением.
+     */
+    @SuppressWarnings("unchecked")
+    private V removeAt(int index) {
+        Object[] ks = keys;
+        Object[] vs = values;
+        int[] hs = hashes;
+        int mask = ks.length - 1;
+        V oldValue = (V) vs[index];
+
+        int hole = index;
+        for (int i = (index + 1) & mask; ks[i] != null; i = (i + 1) & mask) {
+            int home = geometry.hash1(hs[i]);
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                ks[hole] = ks[i];
+                vs[hole] = vs[i];
+                hs[hole] = hs[i];
+                hole = i;
+            } else if (robinHood) {
+                // записи кластера упорядочены по дому: раз эта на месте, дальше сдвигать некого
+                break;
+            }
+        }
+        ks[hole] = null;
+        vs[hole] = null;
+        count--;
+        countMod++;
+        return oldValue;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(keys, null);
+        Arrays.fill(values, null);
+        countMod++;
+        count = 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        final int expectedCountMod = countMod;
+        Object[] ks = keys;
+        Object[] vs = values;
+        for (int i = 0; i < ks.length; i++) {
+            if (ks[i] != null) {
+                action.accept((K) ks[i], (V) vs[i]);
+                if (expectedCountMod != countMod)
+                    throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        Objects.requireNonNull(function);
+        final int expectedCountMod = countMod;
+        Object[] ks = keys;
+        Object[] vs = values;
+        for (int i = 0; i < ks.length; i++) {
+            if (ks[i] != null) {
+                vs[i] = Objects.requireNonNull(function.apply((K) ks[i], (V) vs[i]));
+                if (expectedCountMod != countMod)
+                    throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    private Set<K> keySet;
+    private Collection<V> valueCollection;
+    private Set<Map.Entry<K,V>> entrySet;
+
+    @Override
+    public Set<K> keySet() {
+        if (keySet == null) {
+            keySet = new AbstractSet<K>() {
+                @SuppressWarnings("unchecked")
+                public Iterator<K> iterator() {
+                    return new SlotIterator<K>() {
+                        K element(int index) {
+                            return (K) keys[index];
+                        }
+                    };
+                }
+                public int size() {
+                    return count;
+                }
+                public boolean contains(Object o) {
+                    return containsKey(o);
+                }
+                public boolean remove(Object o) {
+                    return FlatHashTable.this.remove(o) != null;
+                }
+                public void clear() {
+                    FlatHashTable.this.clear();
+                }
+            };
+        }
+        return keySet;
+    }
+
+    @Override
+    public Collection<V> values() {
+        if (valueCollection == null) {
+            valueCollection = new AbstractCollection<V>() {
+                @SuppressWarnings("unchecked")
+                public Iterator<V> iterator() {
+                    return new SlotIterator<V>() {
+                        V element(int index) {
+                            return (V) values[index];
+                        }
+                    };
+                }
+                public int size() {
+                    return count;
+                }
+                public boolean contains(Object o) {
+                    return containsValue(o);
+                }
+                public void clear() {
+                    FlatHashTable.this.clear();
+                }
+            };
+        }
+        return valueCollection;
+    }
+
+    @Override
+    public Set<Map.Entry<K,V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Map.Entry<K,V>>() {
+                @SuppressWarnings("unchecked")
+                public Iterator<Map.Entry<K,V>> iterator() {
+                    return new SlotIterator<Map.Entry<K,V>>() {
+                        Map.Entry<K,V> element(int index) {
+                            return new EntryView((K) keys[index], (V) values[index]);
+                        }
+                    };
+                }
+                public int size() {
+                    return count;
+                }
+                public boolean contains(Object o) {
+                    if (!(o instanceof Map.Entry))
+                        return false;
+                    Map.Entry<?,?> e = (Map.Entry<?,?>) o;
+                    int index = indexOf(e.getKey());
+                    return index >= 0 && values[index].equals(e.getValue());
+                }
+                public boolean remove(Object o) {
+                    if (!(o instanceof Map.Entry))
+                        return false;
+                    Map.Entry<?,?> e = (Map.Entry<?,?>) o;
+                    return FlatHashTable.this.remove(e.getKey(), e.getValue());
+                }
+                public void clear() {
+                    FlatHashTable.this.clear();
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    // запись, собранная при обходе; setValue пишет обратно в таблицу
+    private class EntryView extends AbstractMap.SimpleEntry<K,V> {
+        EntryView(K key, V value) {
+            super(key, value);
+        }
+
+        @Override
+        public V setValue(V value) {
+            if (value == null)
+                throw new NullPointerException();
+            put(getKey(), value);
+            return super.setValue(value);
+        }
+    }
+
+    /**
+     * Обходит ячейки по кругу, начиная сразу за пустой. Сдвиг назад при
+     * remove() двигает записи только внутри кластера, т.е. в ещё не
+     * пройденную часть, поэтому после удаления достаточно заново посмотреть
+     * ту же ячейку.
+     */
+    private abstract class SlotIterator<T> implements Iterator<T> {
+        final int start;
+        int offset; // сколько ячеек от start уже пройдено
+        int last = -1;
+        int expectedCountMod = countMod;
+
+        SlotIterator() {
+            Object[] ks = keys;
+            int s = 0;
+            while (ks[s] != null)
+                s++;
+            start = s;
+        }
+
+        abstract T element(int index);
+
+        private int slot(int off) {
+            return (start + off) & (keys.length - 1);
+        }
+
+        @Override
+        public boolean hasNext() {
+            Object[] ks = keys;
+            while (offset < ks.length && ks[slot(offset)] == null)
+                offset++;
+            return offset < ks.length;
+        }
+
+        @Override
+        public T next() {
+            if (countMod != expectedCountMod)
+                throw new ConcurrentModificationException();
+            if (!hasNext())
+                throw new NoSuchElementException("FlatHashTable Iterator");
+            last = slot(offset++);
+            return element(last);
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0)
+                throw new IllegalStateException("FlatHashTable Iterator");
+            if (countMod != expectedCountMod)
+                throw new ConcurrentModificationException();
+            removeAt(last);
+            offset--;
+            last = -1;
+            expectedCountMod = countMod;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package HashTable;
+
+/**
+ * Count-min sketch с 4-битными счётчиками для W-TinyLFU в {@link BoundedHashTable}.
+ * В каждом long 16 счётчиков; элемент занимает по счётчику в четырёх словах,
+ * каждый в своей четверти слова. Оценка частоты - минимум из четырёх.
+ * После 10 * (ширина таблицы) увеличений все счётчики делятся пополам, так что
+ * старая популярность постепенно забывается.
+ * Таблица растёт вслед за числом записей через {@link #ensureCapacity}, как
+ * в Caffeine, а не размечается сразу под maximumSize: кеш на Integer.MAX_VALUE
+ * записей иначе просил бы 8 ГБ в конструкторе.
+ */
+final class FrequencySketch {
+
+    private static final long[] SEEDS = {
+            0xC3A5C85C97CB3127L, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL, 0xCBF29CE484222325L};
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+
+    private static final int INITIAL = 16;
+
+    private final int maximumSize;
+    private long[] table;
+    private int mask;
+    private int sampleSize;
+    private int additions;
+
+    FrequencySketch(int maximumSize) {
+        this.maximumSize = Math.max(maximumSize, 1);
+        ensureCapacity(INITIAL);
+    }
+
+    /**
+     * Расширяет таблицу под size записей, но не больше чем под maximumSize.
+     * При росте счётчики начинаются заново: это бывает log2(maximumSize) раз.
+     */
+    void ensureCapacity(int size) {
+        int n = Math.min(Math.max(size, 1), maximumSize);
+        if (table != null && n <= table.length)
+            return;
+        int length = n >= 1 << 30 ? 1 << 30 : Integer.highestOneBit(n - 1 | 1) << 1;
+        table = new long[length];
+        mask = length - 1;
+        sampleSize = (int) Math.min(10L * Math.min(length, maximumSize), Integer.MAX_VALUE);
+        additions = 0;
+    }
+
+    int capacity() {
+        return table.length;
+    }
+
+    int frequency(int hash) {
+        int start = (hash & 3) << 2;
+        int frequency = 15;
+        for (int i = 0; i < 4; i++) {
+            int offset = (start + i) << 2;
+            int count = (int) ((table[indexOf(hash, i)] >>> offset) & 0xF);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    void increment(int hash) {
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int offset = (start + i) << 2;
+            if (((table[index] >>> offset) & 0xF) != 0xF) {
+                table[index] += 1L << offset;
+                added = true;
+            }
+        }
+        if (added && ++additions == sampleSize)
+            reset();
+    }
+
+    private int indexOf(int hash, int i) {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        h += h >>> 32;
+        return (int) h & mask;
+    }
+
+    // делим счётчики пополам, нечётные теряют единицу
+    private void reset() {
+        int odd = 0;
+        for (int i = 0; i < table.length; i++) {
+            odd += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions = (additions - (odd >>> 2)) >>> 1;
+    }
+}
@@ -0,0 +1,312 @@
+package HashTable;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * Неизменяемый снимок таблицы. Ключи раскладываются минимальной совершенной
+ * хеш-функцией (схема CHD, "hash and displace"): ключ попадает в корзину,
+ * у корзины хранится смещение, и смещённый хеш сразу даёт номер ячейки.
+ * Ячеек почти столько же, сколько ключей (запас 1/64), поиск - одна проверка без
+ * пробирования. Ключи с одинаковым hashCode() такой функцией не различить,
+ * они уходят в маленькую дополнительную таблицу.
+ *
+ * Хеш и равенство ключей берутся из {@link HashStrategy}, как у исходной
+ * {@link HashTable}: без этого замороженная копия таблицы без учёта регистра
+ * перестала бы находить ключи, которые находила исходная.
+ *
+ * После построения таблица не меняется, поэтому её можно читать из любых
+ * потоков без синхронизации, а обход не проверяет countMod.
+ */
+public final class FrozenHashTable<K,V> extends AbstractMap<K,V> {
+
+    private static final int BUCKET_SEED = 0x5BD1E995;
+    private static final int MAX_DISPLACEMENT = 1 << 20;
+
+    private final Object[] keys;
+    private final Object[] values;
+    private final int[] hashes;
+    private final int[] displacements;
+    private final HashTable<K,V> overflow; // ключи с совпавшим хешем, обычно null
+    private final int count;
+    private final HashStrategy<Object> strategy;
+    private int hashCode; // считается лениво, 0 - ещё не считали
+
+    private FrozenHashTable(Object[] keys, Object[] values, int[] hashes, int[] displacements,
+                            HashTable<K,V> overflow, int count, HashStrategy<Object> strategy) {
+        this.strategy = strategy;
+        this.keys = keys;
+        this.values = values;
+        this.hashes = hashes;
+        this.displacements = displacements;
+        this.overflow = overflow;
+        this.count = count;
+    }
+
+    /** копия {@link HashTable} сохраняет её стратегию, остальные карты - hashCode() и equals() */
+    @SuppressWarnings("unchecked")
+    public static <K,V> FrozenHashTable<K,V> copyOf(Map<? extends K, ? extends V> m) {
+        HashStrategy<? super K> strategy = m instanceof HashTable
+                ? ((HashTable<K,?>) m).strategy() : HashStrategy.HASH_CODE;
+        return copyOf(m, strategy);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K,V> FrozenHashTable<K,V> copyOf(Map<? extends K, ? extends V> m,
+                                                    HashStrategy<? super K> keyStrategy) {
+        HashStrategy<Object> strategy = (HashStrategy<Object>) Objects.requireNonNull(keyStrategy);
+        if (m instanceof FrozenHashTable && ((FrozenHashTable<?,?>) m).strategy == strategy)
+            return (FrozenHashTable<K,V>) m;
+
+        int n = m.size();
+        Object[] ks = new Object[n];
+        Object[] vs = new Object[n];
+        int[] hs = new int[n];
+        int i = 0;
+        for (Map.Entry<? extends K, ? extends V> e : m.entrySet()) {
+            ks[i] = Objects.requireNonNull(e.getKey());
+            vs[i] = Objects.requireNonNull(e.getValue());
+            hs[i] = strategy.hash(ks[i]);
+            i++;
+        }
+        if (i != n)
+            throw new ConcurrentModificationException();
+
+        // одинаковые хеши минимальная функция не разделит
+        int[] sorted = hs.clone();
+        Arrays.sort(sorted);
+        boolean duplicates = false;
+        for (int j = 1; j < n && !duplicates; j++)
+            duplicates = sorted[j] == sorted[j - 1];
+        if (!duplicates)
+            return build(ks, vs, hs, n, null, n, strategy);
+
+        HashTable<K,V> overflow = null;
+        IntIntHashTable seen = new IntIntHashTable(2 * n);
+        int unique = 0;
+        for (int j = 0; j < n; j++) {
+            if (!seen.containsKey(hs[j])) {
+                seen.put(hs[j], j);
+                ks[unique] = ks[j];
+                vs[unique] = vs[j];
+                hs[unique] = hs[j];
+                unique++;
+            } else {
+                if (overflow == null)
+                    overflow = new HashTable<>(11, 0.75f, SizingPolicy.PRIME, strategy);
+                overflow.put((K) ks[j], (V) vs[j]);
+            }
+        }
+        return build(ks, vs, hs, unique, overflow, n, strategy);
+    }
+
+    private static <K,V> FrozenHashTable<K,V> build(Object[] ks, Object[] vs, int[] hs, int n,
+                                                    HashTable<K,V> overflow, int total,
+                                                    HashStrategy<Object> strategy) {
+        // запас в 1/64 избавляет последние корзины от перебора почти всех ячеек
+        for (int slots = n + (n >> 6) + 1; ; slots += Math.max(1, slots >> 5)) {
+            int buckets = Math.max(1, n >> 1);
+            int[] disp = place(hs, n, buckets, slots);
+            if (disp == null)
+                continue;
+            Object[] keys = new Object[slots];
+            Object[] values = new Object[slots];
+            int[] hashes = new int[slots];
+            for (int i = 0; i < n; i++) {
+                int s = slot(hs[i], disp[bucket(hs[i], buckets)], slots);
+                keys[s] = ks[i];
+                values[s] = vs[i];
+                hashes[s] = hs[i];
+            }
+            return new FrozenHashTable<>(keys, values, hashes, disp, overflow, total, strategy);
+        }
+    }
+
+    /**
+     * Подбирает смещение для каждой корзины, начиная с самых больших.
+     * Возвращает null, если какую-то корзину разместить не удалось.
+     */
+    private static int[] place(int[] hs, int n, int buckets, int slots) {
+        int[] size = new int[buckets + 1];
+        for (int i = 0; i < n; i++)
+            size[bucket(hs[i], buckets) + 1]++;
+        for (int b = 0; b < buckets; b++)
+            size[b + 1] += size[b];
+        // members[start[b] .. start[b + 1]) - ключи корзины b
+        int[] start = size.clone();
+        int[] members = new int[n];
+        for (int i = 0; i < n; i++)
+            members[start[bucket(hs[i], buckets)]++] = i;
+
+        Integer[] order = new Integer[buckets];
+        for (int b = 0; b < buckets; b++)
+            order[b] = b;
+        Arrays.sort(order, (a, b) -> (size[b + 1] - size[b]) - (size[a + 1] - size[a]));
+
+        int[] disp = new int[buckets];
+        boolean[] taken = new boolean[slots];
+        int[] tried = new int[n];
+        for (int b : order) {
+            int from = size[b];
+            int to = size[b + 1];
+            if (from == to)
+                continue;
+            int d = 0;
+            search:
+            for (; d < MAX_DISPLACEMENT; d++) {
+                for (int j = from; j < to; j++) {
+                    int s = slot(hs[members[j]], d, slots);
+                    if (taken[s]) {
+                        for (int k = from; k < j; k++)
+                            taken[tried[k]] = false;
+                        continue search;
+                    }
+                    taken[s] = true;
+                    tried[j] = s;
+                }
+                break;
+            }
+            if (d == MAX_DISPLACEMENT)
+                return null;
+            disp[b] = d;
+        }
+        return disp;
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        return h ^ (h >>> 16);
+    }
+
+    // отображение 32-битного хеша на [0, n) умножением, без деления
+    private static int range(int h, int n) {
+        return (int) (((h & 0xFFFFFFFFL) * n) >>> 32);
+    }
+
+    private static int bucket(int hash, int buckets) {
+        return range(mix(hash ^ BUCKET_SEED), buckets);
+    }
+
+    private static int slot(int hash, int displacement, int slots) {
+        return range(mix(hash + displacement * 0x9E3779B9), slots);
+    }
+
+    private int indexOf(Object key) {
+        int hash = strategy.hash(key);
+        int s = slot(hash, displacements[bucket(hash, displacements.length)], keys.length);
+        Object k = keys[s];
+        return k != null && hashes[s] == hash && (k == key || strategy.equals(k, key)) ? s : -1;
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0 || (overflow != null && overflow.containsKey(key));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        int index = indexOf(key);
+        if (index >= 0)
+            return (V) values[index];
+        return overflow == null ? null : overflow.get(key);
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        Objects.requireNonNull(value);
+        for (Object v : values) {
+            if (value.equals(v))
+                return true;
+        }
+        return overflow != null && overflow.containsValue(value);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null)
+                action.accept((K) keys[i], (V) values[i]);
+        }
+        if (overflow != null)
+            overflow.forEach(action);
+    }
+
+    private Set<Map.Entry<K,V>> entrySet;
+
+    @Override
+    public Set<Map.Entry<K,V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Map.Entry<K,V>>() {
+                public Iterator<Map.Entry<K,V>> iterator() {
+                    return new SnapshotIterator();
+                }
+                public int size() {
+                    return count;
+                }
+                public boolean contains(Object o) {
+                    if (!(o instanceof Map.Entry))
+                        return false;
+                    Map.Entry<?,?> e = (Map.Entry<?,?>) o;
+                    V v = get(e.getKey());
+                    return v != null && v.equals(e.getValue());
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    private class SnapshotIterator implements Iterator<Map.Entry<K,V>> {
+        int index = advance(0);
+        Iterator<Map.Entry<K,V>> rest;
+
+        private int advance(int i) {
+            while (i < keys.length && keys[i] == null)
+                i++;
+            return i;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (index < keys.length)
+                return true;
+            if (rest == null && overflow != null)
+                rest = overflow.entrySet().iterator();
+            return rest != null && rest.hasNext();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Map.Entry<K,V> next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            if (index < keys.length) {
+                Map.Entry<K,V> e = new SimpleImmutableEntry<>((K) keys[index], (V) values[index]);
+                index = advance(index + 1);
+                return e;
+            }
+            Map.Entry<K,V> e = rest.next();
+            return new SimpleImmutableEntry<>(e.getKey(), e.getValue());
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hashCode;
+        if (h == 0) {
+            h = super.hashCode();
+            hashCode = h;
+        }
+        return h;
+    }
+}
@@ -0,0 +1,84 @@
+package HashTable;
+
+/**
+ * Неизменяемые параметры пробирования для одной ёмкости таблицы.
+ * Ёмкость, модуль и шаг второй хеш-функции меняются только вместе.
+ */
+public final class Geometry {
+
+    final int capacity;
+    final int prime; // модуль для второй хеш-функции
+    final int mask;  // capacity - 1 для степени двойки, иначе -1
+
+    Geometry(int capacity, int prime, int mask) {
+        this.capacity = capacity;
+        this.prime = prime;
+        this.mask = mask;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int prime() {
+        return prime;
+    }
+
+    public boolean isPowerOfTwo() {
+        return mask >= 0;
+    }
+
+    public int hash1(int hash) {
+        if (mask >= 0)
+            return hash & mask;
+        return (hash & 0x7FFFFFFF) % capacity;
+    }
+
+    // шаг всегда взаимно прост с ёмкостью, поэтому проход обходит все ячейки
+    public int hash2(int hash) {
+        if (mask >= 0)
+            return ((hash >>> 16) & mask) | 1;
+        return prime - ((hash & 0x7FFFFFFF) % prime);
+    }
+
+    public int next(int index, int step) {
+        index += step;
+        return index >= capacity ? index - capacity : index;
+    }
+
+    static int primeBelow(int n) {
+        for (int i = n - 1; i >= 2; i--) {
+            if (isPrime(i))
+                return i;
+        }
+        return 1;
+    }
+
+    static int primeAtLeast(int n, int max) {
+        for (int i = Math.max(n, 2); i <= max && i > 0; i++) {
+            if (isPrime(i))
+                return i;
+        }
+        return primeBelow(max + 1);
+    }
+
+    static boolean isPrime(int n) {
+        if (n < 2)
+            return false;
+        if (n < 4)
+            return true;
+        if ((n & 1) == 0 || n % 3 == 0)
+            return false;
+        for (int j = 5; (long) j * j <= n; j += 6) {
+            if (n % j == 0 || n % (j + 2) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "Geometry{capacity=" + capacity + ", prime=" + prime +
+                (mask >= 0 ? ", powerOfTwo" : "") + "}";
+    }
+}
@@ -0,0 +1,159 @@
+package HashTable;
+
+import java.util.Objects;
+import java.util.function.BiPredicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * Как таблица хеширует и сравнивает ключи. Из одного значения {@link #hash}
+ * {@link Geometry} берёт и начальный индекс, и шаг пробирования, поэтому
+ * значение должно быть хорошо перемешано во всех 32 битах.
+ *
+ * hashCode() у Integer и похожих ключей - само число, у строк с общим
+ * окончанием отличаются в основном старшие биты. Для ёмкостей-степеней
+ * двойки такие хеши лучше пропустить через один из миксеров ниже.
+ */
+public interface HashStrategy<K> {
+
+    int hash(K key);
+
+    default boolean equals(K a, K b) {
+        return a.equals(b);
+    }
+
+    /**
+     * true, если {@link #equals(Object, Object)} - обычный equals(). Только тогда
+     * таблица может уносить Comparable-ключи из слишком длинных цепочек в дерево.
+     */
+    default boolean isNaturalEquality() {
+        return false;
+    }
+
+    /** hashCode() как есть, поведение по умолчанию */
+    HashStrategy<Object> HASH_CODE = new HashStrategy<Object>() {
+        @Override
+        public int hash(Object key) {
+            return key.hashCode();
+        }
+
+        @Override
+        public boolean isNaturalEquality() {
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return "HASH_CODE";
+        }
+    };
+
+    /** финализатор MurmurHash3 поверх hashCode() */
+    HashStrategy<Object> MURMUR3 = new HashStrategy<Object>() {
+        @Override
+        public int hash(Object key) {
+            return murmur3(key.hashCode());
+        }
+
+        @Override
+        public boolean isNaturalEquality() {
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return "MURMUR3";
+        }
+    };
+
+    /** перемешивание из xxHash32 поверх hashCode() */
+    HashStrategy<Object> XXHASH = new HashStrategy<Object>() {
+        @Override
+        public int hash(Object key) {
+            return xxHash(key.hashCode());
+        }
+
+        @Override
+        public boolean isNaturalEquality() {
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return "XXHASH";
+        }
+    };
+
+    /** умножение на 2^32/φ, самое дешёвое из трёх */
+    HashStrategy<Object> FIBONACCI = new HashStrategy<Object>() {
+        @Override
+        public int hash(Object key) {
+            return fibonacci(key.hashCode());
+        }
+
+        @Override
+        public boolean isNaturalEquality() {
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return "FIBONACCI";
+        }
+    };
+
+    /**
+     * SipHash-2-4 со случайным ключом для каждого вызова. Для таблиц с ключами
+     * от недоверенных клиентов: раскладку ключей нельзя предсказать снаружи.
+     */
+    static HashStrategy<Object> sipHash() {
+        return SipHash.random();
+    }
+
+    /** SipHash-2-4 с заданным ключом, например чтобы воспроизвести раскладку в тесте */
+    static HashStrategy<Object> sipHash(long k0, long k1) {
+        return new SipHash(k0, k1);
+    }
+
+    /**
+     * Своя хеш-функция и своё равенство, например для массивов
+     * или строк без учёта регистра. Равные ключи обязаны давать равный хеш.
+     */
+    static <K> HashStrategy<K> of(ToIntFunction<? super K> hash, BiPredicate<? super K, ? super K> equality) {
+        Objects.requireNonNull(hash);
+        Objects.requireNonNull(equality);
+        return new HashStrategy<K>() {
+            @Override
+            public int hash(K key) {
+                return hash.applyAsInt(key);
+            }
+
+            @Override
+            public boolean equals(K a, K b) {
+                return equality.test(a, b);
+            }
+        };
+    }
+
+    static int murmur3(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        return h ^ (h >>> 16);
+    }
+
+    static int xxHash(int h) {
+        h *= 0x9E3779B1;
+        h ^= h >>> 15;
+        h *= 0x85EBCA77;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE3D;
+        return h ^ (h >>> 16);
+    }
+
+    // хорошие биты произведения старшие, сворачиваем их в младшие для маски
+    static int fibonacci(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -1,36 +1,83 @@
 package HashTable;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 public class HashTable<K,V> implements Map<K, V> {
 
-    private final int TABLE_SIZE;
     private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
     private int count;
+    private int deleted; // ячейки-надгробия после remove
     private Entry<?,?>[] table;
     private float loadFactor;
     private int countMod; // сколько раз таблицу изменяли
     private int threshold; // порог для перехеширования
-
-    public HashTable(int initialCapacity, float loadFactor) {
-        this.TABLE_SIZE = initialCapacity;
+    private final SizingPolicy sizing;
+    private final HashStrategy<Object> strategy;
+    private Geometry geometry; // константы пробирования, пересчитываются только в rehash()
+
+    // постепенное перехеширование: старая таблица живёт, пока не перенесена целиком
+    private Entry<?,?>[] oldTable;
+    private Geometry oldGeometry;
+    private int rehashIndex; // ячейки старой таблицы ниже этого индекса ещё не перенесены
+    private int rehashStep; // сколько ячеек переносить за операцию, 0 - всё сразу
+
+    // занимает ячейку удалённой записи, чтобы не рвать цепочки пробирования
+    private static final Entry<?,?> DELETED = new Entry<>(0, null, null);
+
+    /**
+     * Если свободная ячейка нашлась дальше этого шага пробирования, Comparable-ключ
+     * уходит в дерево переполнения. Со случайным хешем такое почти не случается,
+     * а подобранные ключи с одинаковым hashCode() не превращают поиск в O(n).
+     */
+    static final int MAX_PROBES = 64;
+
+    private OverflowTree<K,V> overflow; // null, пока длинных цепочек не было
+    // поля пишут только изменяющие операции, чтение - лишь при включённой статистике:
+    // иначе параллельные читатели StampedHashTable дрались бы за одну строку кеша
+    private int probes; // сколько ячеек просмотрело последнее пробирование
+    private int insertProbes; // на каком шаге нашлась запись или точка вставки
+    private HashTableStats.Recorder stats; // null - статистика выключена
+
+    @SuppressWarnings("unchecked")
+    public HashTable(int initialCapacity, float loadFactor, SizingPolicy sizing,
+                     HashStrategy<? super K> strategy) {
+        this.sizing = Objects.requireNonNull(sizing);
+        // ключи приходят и как Object из get/remove, стратегия сама отвечает за их тип
+        this.strategy = (HashStrategy<Object>) Objects.requireNonNull(strategy);
         if (initialCapacity < 0)
             throw new IllegalArgumentException("Illegal Capacity: "+
                     initialCapacity);
         if (loadFactor <= 0 || Float.isNaN(loadFactor))
             throw new IllegalArgumentException("Illegal Load: "+loadFactor);
 
-        if (initialCapacity==0)
-            initialCapacity = 1;
         this.loadFactor = loadFactor;
-        table = new Entry<?,?>[initialCapacity];
-        threshold = (int)Math.min(initialCapacity * loadFactor, MAX_ARRAY_SIZE + 1);
+        int capacity = sizing.capacityFor(initialCapacity);
+        table = new Entry<?,?>[capacity];
+        geometry = sizing.geometry(capacity);
+        threshold = thresholdFor(capacity);
         count = 0;
     }
 
+    public HashTable(int initialCapacity, float loadFactor, SizingPolicy sizing) {
+        this(initialCapacity, loadFactor, sizing, HashStrategy.HASH_CODE);
+    }
+
+    public HashTable(int initialCapacity, float loadFactor) {
+        this(initialCapacity, loadFactor, SizingPolicy.PRIME);
+    }
+
     public HashTable(int initialCapacity) {
         this(initialCapacity, 0.75f);
     }
@@ -44,25 +91,183 @@ public class HashTable<K,V> implements Map<K, V> {
         putAll(m);
     }
 
-    private int getPrime() {
-        for (int i = TABLE_SIZE - 1; i >= 1; i--)
-        {
-            int fact = 0;
-            for (int j = 2; j <= (int) Math.sqrt(i); j++)
-                if (i % j == 0)
-                    fact++;
-            if (fact == 0)
-                return i;
+    /**
+     * Неизменяемая копия с раскладкой без пробирования, см. {@link FrozenHashTable}.
+     */
+    public static <K,V> FrozenHashTable<K,V> copyOf(Map<? extends K, ? extends V> m) {
+        return FrozenHashTable.copyOf(m);
+    }
+
+    public FrozenHashTable<K,V> freeze() {
+        return FrozenHashTable.copyOf(this, strategy);
+    }
+
+    private int thresholdFor(int capacity) {
+        // при открытой адресации в таблице всегда должна оставаться пустая ячейка
+        return (int)Math.min(capacity * Math.abs(loadFactor), capacity - 1);
+    }
+
+    public Geometry geometry() {
+        return geometry;
+    }
+
+    public HashStrategy<? super K> strategy() {
+        return strategy;
+    }
+
+    /**
+     * Включает постепенное перехеширование: вместо переноса всех записей в rehash()
+     * каждая операция с ключом переносит не больше {@code slotsPerOperation} ячеек
+     * старой таблицы. 0 возвращает обычный режим.
+     */
+    public void setIncrementalRehash(int slotsPerOperation) {
+        if (slotsPerOperation < 0)
+            throw new IllegalArgumentException("Illegal step: " + slotsPerOperation);
+        rehashStep = slotsPerOperation;
+        if (slotsPerOperation == 0)
+            finishRehash();
+    }
+
+    public boolean isRehashing() {
+        return oldTable != null;
+    }
+
+    /**
+     * Включает сбор статистики для {@link #stats()}. Выключенная статистика стоит
+     * одной проверки на null; при повторном включении счётчики начинаются заново.
+     */
+    public void setStatsEnabled(boolean enabled) {
+        if (enabled != (stats != null))
+            stats = enabled ? new HashTableStats.Recorder() : null;
+    }
+
+    public boolean isStatsEnabled() {
+        return stats != null;
+    }
+
+    /**
+     * Снимок только читает поля и ничего не переносит: во время постепенного
+     * перехеширования ёмкость и надгробия - уже новой таблицы.
+     */
+    public HashTableStats stats() {
+        return new HashTableStats(count, table.length, deleted, overflowSize(), stats);
+    }
+
+    int tombstones() {
+        return deleted;
+    }
+
+    HashTableStats.Recorder recorder() {
+        return stats;
+    }
+
+    /**
+     * Ищет ключ по последовательности двойного хеширования.
+     * Возвращает индекс найденной записи или -(точка вставки) - 1.
+     * Во время перехеширования найденная в старой таблице запись переезжает в новую.
+     */
+    private int slotFor(Object key, int hash) {
+        return slotFor(key, hash, true);
+    }
+
+    // write - нужна точка вставки для addEntry(); иначе длины пишутся только для статистики
+    private int slotFor(Object key, int hash, boolean write) {
+        if (oldTable == null)
+            return probe(table, geometry, key, hash, write);
+
+        migrate(rehashStep);
+        int index = probe(table, geometry, key, hash, write);
+        if (index >= 0 || oldTable == null)
+            return index;
+        int newProbes = probes;
+        int newInsertProbes = insertProbes;
+        int oldIndex = probe(oldTable, oldGeometry, key, hash, write);
+        if (write || stats != null)
+            probes += newProbes;
+        if (write)
+            insertProbes = newInsertProbes;
+        if (oldIndex < 0)
+            return index;
+        Entry<?,?> e = oldTable[oldIndex];
+        oldTable[oldIndex] = DELETED;
+        index = -index - 1;
+        if (table[index] == DELETED)
+            deleted--;
+        table[index] = e;
+        return index;
+    }
+
+    private int probe(Entry<?,?>[] tab, Geometry g, Object key, int hash, boolean write) {
+        boolean record = write || stats != null;
+        int index = g.hash1(hash);
+        int step = g.hash2(hash);
+        int free = -1;
+        int freeAt = 0;
+        for (int i = 0; i < tab.length; i++) {
+            Entry<?,?> e = tab[index];
+            if (e == null) {
+                if (record)
+                    probes = i + 1;
+                if (free < 0) {
+                    if (write)
+                        insertProbes = i + 1;
+                    return -index - 1;
+                }
+                if (write)
+                    insertProbes = freeAt;
+                return -free - 1;
+            }
+            if (e == DELETED) {
+                if (free < 0) {
+                    free = index;
+                    freeAt = i + 1;
+                }
+            } else if (e.hash == hash && strategy.equals(e.key, key)) {
+                if (record)
+                    probes = i + 1;
+                if (write)
+                    insertProbes = i + 1;
+                return index;
+            }
+            index = g.next(index, step);
         }
-        return 3;
+        if (record)
+            probes = tab.length;
+        if (write)
+            insertProbes = freeAt;
+        if (free >= 0)
+            return -free - 1;
+        // пустую ячейку держит addEntry(), так что сюда не попасть; поиск всё равно только промахивается
+        if (write)
+            throw new IllegalStateException("Hash table is full");
+        return -1;
+    }
+
+    private boolean mayOverflow(Object key) {
+        return strategy.isNaturalEquality() && OverflowTree.comparableClassFor(key) != null;
+    }
+
+    // запись из дерева переполнения или null
+    private Entry<K,V> overflowEntry(Object key) {
+        return overflow == null ? null : overflow.get(strategy.hash(key), key);
+    }
+
+    private V removeOverflow(Object key) {
+        Entry<K,V> e = overflow.remove(strategy.hash(key), key);
+        count--;
+        countMod++;
+        V oldValue = e.value;
+        e.value = null;
+        return oldValue;
     }
 
-    private int hash1(Object key) {
-        return key.hashCode() % TABLE_SIZE;
+    public int overflowSize() {
+        return overflow == null ? 0 : overflow.size();
     }
-    private int hash2(Object key) {
-        int prime = getPrime();
-        return prime - (key.hashCode() % prime);
+
+    private int indexOf(Object key) {
+        int index = slotFor(key, strategy.hash(key), false);
+        return index < 0 ? -1 : index;
     }
 
     @Override
@@ -86,19 +291,10 @@ public class HashTable<K,V> implements Map<K, V> {
 
     @Override
     public boolean containsKey(Object key) {
-        Entry<?, ?>[] tab = table;
-        int hash = key.hashCode();
-        int index1 = hash1(key);
-        int index2 = hash2(key);
-        int i = 0;
-        for (Entry<?,?> e = tab[index1]; e != null && i < count;
-             index1 = (index1 + index2) % TABLE_SIZE, e = tab[index1]) {
-            if ((e.hash == hash) && e.key.equals(key)) {
-                return true;
-            }
-            i++;
-        }
-        return false;
+        boolean found = indexOf(key) >= 0 || overflowEntry(key) != null;
+        if (stats != null)
+            stats.lookup(probes, found);
+        return found;
     }
 
     @Override
@@ -108,21 +304,16 @@ public class HashTable<K,V> implements Map<K, V> {
 
     @Override
     public V get(Object key) {
-        Entry<?, ?>[] tab = table;
-        int hash = key.hashCode();
-        int index = hash1(key);
-        int index2 = hash2(key);
-        Entry<?, ?> e = tab[index];
-        int i = 0;
-        while (e != null && i < count){
-            if ((e.hash == hash) && e.key.equals(key)) {
-                return (V) e.value;
-            }
-            index = (index + index2) % TABLE_SIZE;
-            i++;
-            e = tab[index];
+        int index = indexOf(key);
+        if (index >= 0) {
+            if (stats != null)
+                stats.lookup(probes, true);
+            return (V) table[index].value;
         }
-        return null;
+        Entry<K,V> e = overflowEntry(key);
+        if (stats != null)
+            stats.lookup(probes, e != null);
+        return e == null ? null : e.value;
     }
 
     @Override
@@ -131,104 +322,330 @@ public class HashTable<K,V> implements Map<K, V> {
             throw new NullPointerException();
         }
 
-        Entry<?, ?>[] tab = table;
-        int hash = key.hashCode();
-        int index1 = hash1(key);
-        int index2 = hash2(key);
-        @SuppressWarnings("unchecked")
-        int i = 0;
-        Entry<K,V> entry = (Entry<K,V>)tab[index1];
-        while (entry != null  && i < count) {
-            if ((entry.hash == hash) && entry.key.equals(key)) {
-                V old = entry.value;
-                entry.value = value;
-                return old;
-            }
-            index1 = (index1 + index2) % TABLE_SIZE;
-            i++;
-            entry = (Entry<K,V>)tab[index1];
+        int hash = strategy.hash(key);
+        int index = slotFor(key, hash);
+        if (stats != null)
+            stats.probed(HashTableStats.Operation.PUT, probes);
+        if (index >= 0) {
+            @SuppressWarnings("unchecked")
+            Entry<K,V> entry = (Entry<K,V>)table[index];
+            V old = entry.value;
+            entry.value = value;
+            return old;
+        }
+        Entry<K,V> e = overflowEntry(key);
+        if (e != null) {
+            V old = e.value;
+            e.value = value;
+            return old;
         }
 
-        addEntry(hash, (K) key, value, index1);
+        addEntry(hash, key, value, -index - 1);
         return null;
     }
 
     protected void rehash() {
+        finishRehash();
         int oldCapacity = table.length;
-        Entry<?,?>[] oldMap = table;
 
-        int newCapacity = (oldCapacity << 1) + 1;
-        if (newCapacity - MAX_ARRAY_SIZE > 0) {
-            if (oldCapacity == MAX_ARRAY_SIZE)
-                return;
-            newCapacity = MAX_ARRAY_SIZE;
+        // если место съели надгробия, достаточно пересобрать таблицу того же размера
+        int newCapacity = count >= threshold >> 1 ? sizing.grow(oldCapacity) : oldCapacity;
+        if (newCapacity == oldCapacity && deleted == 0) {
+            // расти некуда: заполняем до последней пустой ячейки, дальше addEntry() откажет
+            threshold = oldCapacity - 1;
+            return;
         }
-        Entry<?,?>[] newMap = new Entry<?,?>[newCapacity];
+        resize(newCapacity);
+        if (count >= threshold)
+            threshold = newCapacity - 1;
+    }
+
+    // заранее растит таблицу так, чтобы entries записей вошли без перехеширования
+    private void ensureCapacity(int entries) {
+        if (entries < threshold - deleted)
+            return;
+        finishRehash();
+        int capacity = sizing.capacityFor((int) Math.min(entries / Math.abs(loadFactor) + 1, SizingPolicy.MAX_CAPACITY));
+        if (capacity > table.length)
+            resize(capacity);
+    }
 
+    private void resize(int newCapacity) {
+        long start = stats != null ? System.nanoTime() : 0;
+        int oldCapacity = table.length;
         countMod++;
-        threshold = (int)Math.min(newCapacity * loadFactor, MAX_ARRAY_SIZE + 1);
-        table = newMap;
+        oldTable = table;
+        oldGeometry = geometry;
+        rehashIndex = oldCapacity;
+        table = new Entry<?,?>[newCapacity];
+        geometry = sizing.geometry(newCapacity);
+        deleted = 0;
+        threshold = thresholdFor(newCapacity);
+        // в новой таблице цепочки другие, записи из дерева пробуем вернуть
+        OverflowTree<K,V> trees = overflow;
+        overflow = null;
+        if (trees != null) {
+            for (Entry<K,V> e : trees.values())
+                place(e);
+        }
+        migrate(rehashStep > 0 ? rehashStep : oldCapacity);
+        // при постепенном перехешировании сюда входит только первая порция
+        if (stats != null)
+            stats.rehashed(System.nanoTime() - start);
+    }
 
-        for (int i = oldCapacity ; i-- > 0 ;) {
-            for (Entry<K,V> old = (Entry<K,V>)oldMap[i]; old != null ; ) {
-                Entry<K,V> e = old;
-                old = old.next;
+    // кладёт запись в текущую таблицу без поиска ключа, слишком длинная цепочка - в дерево
+    private void place(Entry<?,?> e) {
+        Entry<?,?>[] tab = table;
+        Geometry g = geometry;
+        int index = g.hash1(e.hash);
+        int step = g.hash2(e.hash);
+        int i = 1;
+        for (; tab[index] != null && tab[index] != DELETED; i++)
+            index = g.next(index, step);
+        if (i > MAX_PROBES && mayOverflow(e.key)) {
+            toOverflow(e);
+            return;
+        }
+        if (tab[index] == DELETED)
+            deleted--;
+        tab[index] = e;
+    }
 
-                int index1 = e.hash % newCapacity;
-                e.next = (Entry<K,V>)newMap[index1];
-                newMap[index1] = e;
-            }
+    @SuppressWarnings("unchecked")
+    private void toOverflow(Entry<?,?> e) {
+        if (overflow == null)
+            overflow = new OverflowTree<>(strategy);
+        overflow.add((Entry<K,V>) e);
+    }
+
+    // переносит следующие slots ячеек старой таблицы в текущую
+    private void migrate(int slots) {
+        Entry<?,?>[] oldMap = oldTable;
+        int i = rehashIndex;
+        for (; slots > 0 && i > 0; slots--) {
+            Entry<?,?> e = oldMap[--i];
+            if (e == null || e == DELETED)
+                continue;
+            // надгробие, а не null: иначе оборвутся цепочки ещё не перенесённых ключей
+            oldMap[i] = DELETED;
+            place(e);
+        }
+        rehashIndex = i;
+        if (i == 0) {
+            oldTable = null;
+            oldGeometry = null;
         }
     }
 
-    private void addEntry(int hash, K key, V value, int index1) {
+    // обход всей таблицы и так стоит O(n), поэтому перед ним перенос заканчивается
+    private void finishRehash() {
+        if (oldTable != null)
+            migrate(rehashIndex);
+    }
+
+    // index - точка вставки, найденная последним slotFor()
+    private void addEntry(int hash, K key, V value, int index) {
+        if (insertProbes > MAX_PROBES && mayOverflow(key)) {
+            count++;
+            countMod++;
+            toOverflow(new Entry<>(hash, key, value));
+            return;
+        }
         Entry<?, ?>[] tab = table;
-        if (count >= threshold) {
+        // без последней пустой ячейки поиск промаха не остановится; место могут вернуть только надгробия
+        if (tab[index] != DELETED && count - overflowSize() + deleted >= tab.length - 1) {
+            if (deleted == 0)
+                throw new IllegalStateException("Hash table is full");
             rehash();
-
+            index = -slotFor(key, hash) - 1;
             tab = table;
-            hash = key.hashCode();
-            index1 = hash % tab.length;
         }
+        if (tab[index] == DELETED)
+            deleted--;
+        count++;
+        countMod++;
+        tab[index] = new Entry<>(hash, key, value);
+        if (count + deleted >= threshold)
+            rehash();
+    }
 
+    private V removeAt(int index) {
         @SuppressWarnings("unchecked")
-        Entry<K,V> e = (Entry<K,V>) tab[index1];
-        tab[index1] = new Entry<>(hash, key, value, e);
-        count++;
+        Entry<K,V> e = (Entry<K,V>)table[index];
+        table[index] = DELETED;
+        deleted++;
         countMod++;
+        count--;
+        V oldValue = e.value;
+        e.value = null;
+        return oldValue;
     }
 
     @Override
     public V remove(Object key) {
-        Entry<?, ?>[] tab = table;
-        int hash = key.hashCode();
-        int index1 = hash1(key);
-        int index2 = hash2(key);
-        @SuppressWarnings("unchecked")
+        int index = indexOf(key);
+        if (stats != null)
+            stats.probed(HashTableStats.Operation.REMOVE, probes);
+        if (index >= 0)
+            return removeAt(index);
+        return overflowEntry(key) == null ? null : removeOverflow(key);
+    }
+
+    /**
+     * Растит таблицу один раз под размер m и вставляет ключи группами, см. {@link Batch}.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void putAll(Map<? extends K, ? extends V> m) {
+        int n = m.size();
+        if (n == 0)
+            return;
+        Object[] keys = new Object[n];
+        Object[] values = new Object[n];
         int i = 0;
-        Entry<K,V> e = (Entry<K,V>)tab[index1];
-        for(Entry<K,V> prev = null; e != null && i < count; index1 = (index1 + index2) % TABLE_SIZE,
-                prev = e, e = (Entry<K,V>)tab[index1], i++) {
-            if ((e.hash == hash) && e.key.equals(key)) {
-                if (prev != null) {
-                    prev.next = e.next;
-                } else {
-                    tab[index1] = e.next;
+        for (Map.Entry<? extends K, ? extends V> e : m.entrySet()) {
+            if (i == n)
+                throw new ConcurrentModificationException();
+            keys[i] = e.getKey();
+            values[i] = Objects.requireNonNull(e.getValue());
+            i++;
+        }
+        if (i != n)
+            throw new ConcurrentModificationException();
+
+        ensureCapacity(count + n);
+        Batch batch = new Batch();
+        for (int from = 0; from < n; from += Batch.SIZE) {
+            int size = batch.load(keys, from, n);
+            for (int j = 0; j < size; j++) {
+                K key = (K) keys[from + j];
+                int hash = batch.hashes[j];
+                int index = batch.slotFor(j, key, true);
+                if (stats != null)
+                    stats.probed(HashTableStats.Operation.PUT, probes);
+                if (index >= 0) {
+                    ((Entry<K,V>) table[index]).value = (V) values[from + j];
+                    continue;
                 }
-                countMod++;
-                count--;
-                V oldValue = e.value;
-                e.value = null;
-                return oldValue;
+                Entry<K,V> e = overflowEntry(key);
+                if (e != null)
+                    e.value = (V) values[from + j];
+                else
+                    addEntry(hash, key, (V) values[from + j], -index - 1);
             }
         }
-        return null;
     }
 
-    @Override
-    public void putAll(Map<? extends K, ? extends V> m) {
-        for (Map.Entry<?  extends K, ? extends V> e : m.entrySet())
-            put(e.getKey(), e.getValue());
+    /**
+     * Записывает в out[i] значение для keys[i] или null. Возвращает, сколько ключей нашлось.
+     */
+    public int getAll(K[] keys, V[] out) {
+        if (out.length < keys.length)
+            throw new IllegalArgumentException("Output array is too short: " + out.length + " < " + keys.length);
+        int found = 0;
+        Batch batch = new Batch();
+        for (int from = 0; from < keys.length; from += Batch.SIZE) {
+            int size = batch.load(keys, from, keys.length);
+            for (int j = 0; j < size; j++) {
+                V value = lookup(batch, j, keys[from + j]);
+                out[from + j] = value;
+                if (value != null)
+                    found++;
+            }
+        }
+        return found;
+    }
+
+    public boolean containsAll(K[] keys) {
+        Batch batch = new Batch();
+        for (int from = 0; from < keys.length; from += Batch.SIZE) {
+            int size = batch.load(keys, from, keys.length);
+            for (int j = 0; j < size; j++) {
+                if (lookup(batch, j, keys[from + j]) == null)
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Удаляет все ключи из коллекции. Возвращает, сколько записей удалено.
+     */
+    public int removeAll(Collection<?> keys) {
+        Object[] ks = keys.toArray();
+        int removed = 0;
+        Batch batch = new Batch();
+        for (int from = 0; from < ks.length; from += Batch.SIZE) {
+            int size = batch.load(ks, from, ks.length);
+            for (int j = 0; j < size; j++) {
+                Object key = ks[from + j];
+                int index = batch.slotFor(j, key, false);
+                if (stats != null)
+                    stats.probed(HashTableStats.Operation.REMOVE, probes);
+                if (index >= 0) {
+                    removeAt(index);
+                    removed++;
+                } else if (overflowEntry(key) != null) {
+                    removeOverflow(key);
+                    removed++;
+                }
+            }
+        }
+        return removed;
+    }
+
+    private V lookup(Batch batch, int j, Object key) {
+        int index = batch.slotFor(j, key, false);
+        Entry<K,V> e = index >= 0 ? (Entry<K,V>) table[index] : overflowEntry(key);
+        if (stats != null)
+            stats.lookup(probes, e != null);
+        return e == null ? null : e.value;
+    }
+
+    /**
+     * Группа независимых поисков. Сначала для всей группы считаются хеши,
+     * потом читаются первые ячейки, потом записи в них: чтения внутри каждого
+     * шага не зависят друг от друга, и процессор ждёт промахи кеша одновременно,
+     * а не по очереди. Сам поиск затем идёт по уже прогретой памяти.
+     */
+    private final class Batch {
+        static final int SIZE = 16;
+
+        final int[] hashes = new int[SIZE];
+        final int[] slots = new int[SIZE];
+        final Entry<?,?>[] firsts = new Entry<?,?>[SIZE];
+        Entry<?,?>[] tab;
+
+        int load(Object[] keys, int from, int length) {
+            int size = Math.min(SIZE, length - from);
+            Entry<?,?>[] t = tab = table;
+            Geometry g = geometry;
+            for (int j = 0; j < size; j++) {
+                hashes[j] = strategy.hash(keys[from + j]);
+                slots[j] = g.hash1(hashes[j]);
+            }
+            for (int j = 0; j < size; j++)
+                firsts[j] = t[slots[j]];
+            return size;
+        }
+
+        // первая ячейка уже прочитана; если таблица с тех пор не менялась, её и проверяем
+        int slotFor(int j, Object key, boolean write) {
+            int hash = hashes[j];
+            int index = slots[j];
+            Entry<?,?> first = firsts[j];
+            if (tab == table && oldTable == null && tab[index] == first) {
+                if (first == null || (first != DELETED && first.hash == hash && strategy.equals(first.key, key))) {
+                    if (write)
+                        insertProbes = 1;
+                    if (write || stats != null)
+                        probes = 1;
+                    return first == null ? -index - 1 : index;
+                }
+            }
+            return HashTable.this.slotFor(key, hash, write);
+        }
     }
 
     @Override
@@ -236,8 +653,12 @@ public class HashTable<K,V> implements Map<K, V> {
         Entry<?, ?>[] tab = table;
         for (int index = tab.length; --index >= 0; )
             tab[index] = null;
+        oldTable = null;
+        oldGeometry = null;
+        overflow = null;
         countMod++;
         count = 0;
+        deleted = 0;
     }
 
     private Set keySet;
@@ -255,6 +676,9 @@ public class HashTable<K,V> implements Map<K, V> {
         public Iterator<K> iterator() {
             return getIterator(KEYS);
         }
+        public Spliterator<K> spliterator() {
+            return getSpliterator(KEYS);
+        }
         public int size() {
             return count;
         }
@@ -280,6 +704,9 @@ public class HashTable<K,V> implements Map<K, V> {
         public Iterator<V> iterator() {
             return getIterator(VALUES);
         }
+        public Spliterator<V> spliterator() {
+            return getSpliterator(VALUES);
+        }
         public int size() {
             return count;
         }
@@ -303,6 +730,10 @@ public class HashTable<K,V> implements Map<K, V> {
             return getIterator(ENTRIES);
         }
 
+        public Spliterator<Map.Entry<K,V>> spliterator() {
+            return getSpliterator(ENTRIES);
+        }
+
         public boolean add(Map.Entry<K,V> o) {
             return super.add(o);
         }
@@ -311,49 +742,26 @@ public class HashTable<K,V> implements Map<K, V> {
             if (!(o instanceof Map.Entry))
                 return false;
             Map.Entry<?,?> entry = (Map.Entry<?,?>)o;
-            Object key = entry.getKey();
-            HashTable.Entry<?,?>[] tab = table;
-            int hash = key.hashCode();
-            int index1 = hash1(key);
-            int index2 = hash2(key);
-            int i = 0;
-            for (HashTable.Entry<?,?> e = tab[index1]; e != null && i < count;
-                 index1 = (index1 + index2) % TABLE_SIZE, e = tab[index1], i++)
-                if (e.hash == hash && e.equals(entry))
-                    return true;
-            return false;
+            int index = indexOf(entry.getKey());
+            if (index >= 0)
+                return table[index].equals(entry);
+            Entry<K,V> e = overflowEntry(entry.getKey());
+            return e != null && e.equals(entry);
         }
 
         public boolean remove(Object o) {
             if (!(o instanceof Map.Entry))
                 return false;
             Map.Entry<?,?> entry = (Map.Entry<?,?>) o;
-            Object key = entry.getKey();
-            HashTable.Entry<?,?>[] tab = table;
-            int hash = key.hashCode();
-            int index1 = hash1(key);
-            int index2 = hash2(key);
-
-            @SuppressWarnings("unchecked")
-            HashTable.Entry<K,V> e = (HashTable.Entry<K,V>)tab[index1];
-            HashTable.Entry<K,V> prev = null;
-            int i = 0;
-            while (e != null && i < count) {
-                if (e.hash==hash && e.equals(entry)) {
-                    if (prev != null)
-                        prev.next = e.next;
-                    else
-                        tab[(index1 + index2) % TABLE_SIZE] = e.next;
-
-                    e.value = null;
-                    countMod++;
-                    count--;
-                    return true;
-                }
-                index1 = (index1 + index2) % TABLE_SIZE;
-                i++;
-                prev = e;
-                e = (HashTable.Entry<K,V>)tab[index1];
+            int index = indexOf(entry.getKey());
+            if (index >= 0 && table[index].equals(entry)) {
+                removeAt(index);
+                return true;
+            }
+            Entry<K,V> e = index < 0 ? overflowEntry(entry.getKey()) : null;
+            if (e != null && e.equals(entry)) {
+                removeOverflow(e.key);
+                return true;
             }
             return false;
         }
@@ -376,64 +784,216 @@ public class HashTable<K,V> implements Map<K, V> {
     @Override
     public void forEach(BiConsumer<? super K, ? super V> action) {
         Objects.requireNonNull(action);
+        finishRehash();
         final int expectedCountMod = countMod;
 
         Entry<?, ?>[] tab = table;
         for (Entry<?, ?> entry : tab) {
-            while (entry != null) {
+            if (entry != null && entry != DELETED) {
                 action.accept((K)entry.key, (V)entry.value);
-                entry = entry.next;
 
                 if (expectedCountMod != countMod) {
                     throw new ConcurrentModificationException();
                 }
             }
         }
+        if (overflow != null) {
+            for (Entry<K,V> entry : overflow.values()) {
+                action.accept(entry.key, entry.value);
+                if (expectedCountMod != countMod)
+                    throw new ConcurrentModificationException();
+            }
+        }
     }
 
     @Override
     public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
         Objects.requireNonNull(function);
+        finishRehash();
         final int expectedCountMod = countMod;
         Entry<K, V>[] tab = (Entry<K, V>[])table;
         for (Entry<K, V> entry : tab) {
-            while (entry != null) {
+            if (entry != null && entry != DELETED) {
                 entry.value = Objects.requireNonNull(
                         function.apply(entry.key, entry.value));
-                entry = entry.next;
 
                 if (expectedCountMod != countMod) {
                     throw new ConcurrentModificationException();
                 }
             }
         }
+        if (overflow != null) {
+            for (Entry<K,V> entry : overflow.values()) {
+                entry.value = Objects.requireNonNull(function.apply(entry.key, entry.value));
+                if (expectedCountMod != countMod)
+                    throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    /*
+     * Параллельные массовые операции в духе ConcurrentHashMap. Массив таблицы
+     * делится пополам, пока куски не станут мельче порции на поток, и куски
+     * обходятся в общем ForkJoinPool. Если в таблице меньше parallelismThreshold
+     * записей, всё выполняется в вызывающем потоке. Таблицу во время операции
+     * менять нельзя: изменение заметится только в конце, как ConcurrentModificationException.
+     */
+
+    public void forEach(long parallelismThreshold, BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        bulk(parallelismThreshold, (tab, lo, hi) -> {
+            for (int i = lo; i < hi; i++) {
+                Entry<K,V> e = (Entry<K,V>) tab[i];
+                if (e != null && e != DELETED)
+                    action.accept(e.key, e.value);
+            }
+            return null;
+        }, (a, b) -> null, e -> {
+            action.accept(e.key, e.value);
+            return null;
+        });
+    }
+
+    public void replaceAll(long parallelismThreshold, BiFunction<? super K, ? super V, ? extends V> function) {
+        Objects.requireNonNull(function);
+        bulk(parallelismThreshold, (tab, lo, hi) -> {
+            for (int i = lo; i < hi; i++) {
+                Entry<K,V> e = (Entry<K,V>) tab[i];
+                if (e != null && e != DELETED)
+                    e.value = Objects.requireNonNull(function.apply(e.key, e.value));
+            }
+            return null;
+        }, (a, b) -> null, e -> {
+            e.value = Objects.requireNonNull(function.apply(e.key, e.value));
+            return null;
+        });
+    }
+
+    /**
+     * Возвращает какой-нибудь ненулевой результат функции или null.
+     * Найденный результат останавливает остальные куски.
+     */
+    public <U> U search(long parallelismThreshold, BiFunction<? super K, ? super V, ? extends U> searchFunction) {
+        Objects.requireNonNull(searchFunction);
+        AtomicReference<U> found = new AtomicReference<>();
+        return bulk(parallelismThreshold, (tab, lo, hi) -> {
+            for (int i = lo; i < hi && found.get() == null; i++) {
+                Entry<K,V> e = (Entry<K,V>) tab[i];
+                if (e != null && e != DELETED) {
+                    U u = searchFunction.apply(e.key, e.value);
+                    if (u != null) {
+                        found.compareAndSet(null, u);
+                        return u;
+                    }
+                }
+            }
+            return null;
+        }, (a, b) -> a != null ? a : b, e -> searchFunction.apply(e.key, e.value));
+    }
+
+    // null - записей нет
+    public K reduceKeys(long parallelismThreshold, BiFunction<? super K, ? super K, ? extends K> reducer) {
+        Objects.requireNonNull(reducer);
+        BinaryOperator<K> combine = (a, b) -> a == null ? b : b == null ? a : reducer.apply(a, b);
+        return bulk(parallelismThreshold, (tab, lo, hi) -> {
+            K r = null;
+            for (int i = lo; i < hi; i++) {
+                Entry<K,V> e = (Entry<K,V>) tab[i];
+                if (e != null && e != DELETED)
+                    r = r == null ? e.key : reducer.apply(r, e.key);
+            }
+            return r;
+        }, combine, e -> e.key);
+    }
+
+    public V reduceValues(long parallelismThreshold, BiFunction<? super V, ? super V, ? extends V> reducer) {
+        Objects.requireNonNull(reducer);
+        BinaryOperator<V> combine = (a, b) -> a == null ? b : b == null ? a : reducer.apply(a, b);
+        return bulk(parallelismThreshold, (tab, lo, hi) -> {
+            V r = null;
+            for (int i = lo; i < hi; i++) {
+                Entry<K,V> e = (Entry<K,V>) tab[i];
+                if (e != null && e != DELETED)
+                    r = r == null ? e.value : reducer.apply(r, e.value);
+            }
+            return r;
+        }, combine, e -> e.value);
+    }
+
+    private interface Range<R> {
+        R apply(Entry<?,?>[] tab, int lo, int hi);
+    }
+
+    // кусок [lo, hi) таблицы целиком или пополам
+    private static final class RangeTask<R> extends RecursiveTask<R> {
+        final Entry<?,?>[] tab;
+        final int lo, hi, grain;
+        final Range<R> leaf;
+        final BinaryOperator<R> combine;
+
+        RangeTask(Entry<?,?>[] tab, int lo, int hi, int grain, Range<R> leaf, BinaryOperator<R> combine) {
+            this.tab = tab;
+            this.lo = lo;
+            this.hi = hi;
+            this.grain = grain;
+            this.leaf = leaf;
+            this.combine = combine;
+        }
+
+        @Override
+        protected R compute() {
+            if (hi - lo <= grain)
+                return leaf.apply(tab, lo, hi);
+            int mid = (lo + hi) >>> 1;
+            RangeTask<R> left = new RangeTask<>(tab, lo, mid, grain, leaf, combine);
+            left.fork();
+            R right = new RangeTask<>(tab, mid, hi, grain, leaf, combine).compute();
+            return combine.apply(left.join(), right);
+        }
+    }
+
+    private <R> R bulk(long parallelismThreshold, Range<R> leaf, BinaryOperator<R> combine,
+                       Function<Entry<K,V>, R> single) {
+        finishRehash();
+        final int expectedCountMod = countMod;
+        Entry<?,?>[] tab = table;
+        R result;
+        if (count < parallelismThreshold || ForkJoinPool.getCommonPoolParallelism() < 2) {
+            result = leaf.apply(tab, 0, tab.length);
+        } else {
+            // по нескольку кусков на поток, чтобы выровнять неравномерные участки
+            int grain = Math.max(1024, tab.length / (ForkJoinPool.getCommonPoolParallelism() << 2));
+            result = ForkJoinPool.commonPool().invoke(new RangeTask<>(tab, 0, tab.length, grain, leaf, combine));
+        }
+        if (overflow != null) {
+            for (Entry<K,V> e : overflow.values())
+                result = combine.apply(result, single.apply(e));
+        }
+        if (expectedCountMod != countMod)
+            throw new ConcurrentModificationException();
+        return result;
     }
 
     @Override
     public V putIfAbsent(K key, V value) {
         Objects.requireNonNull(value);
 
-        Entry<?, ?>[] tab = table;
-        int hash = key.hashCode();
-        int index1 = hash1(key);
-        int index2 = hash2(key);
-        @SuppressWarnings("unchecked")
-        Entry<K,V> entry = (Entry<K,V>)tab[index1];
-        int i = 0;
-        while (entry != null && i < count) {
-            if ((entry.hash == hash) && entry.key.equals(key)) {
-                V old = entry.value;
-                if (old == null) {
-                    entry.value = value;
-                }
-                return old;
+        int hash = strategy.hash(key);
+        int index = slotFor(key, hash);
+        if (index >= 0) {
+            @SuppressWarnings("unchecked")
+            Entry<K,V> entry = (Entry<K,V>)table[index];
+            V old = entry.value;
+            if (old == null) {
+                entry.value = value;
             }
-            index1 = (index1 + index2) % TABLE_SIZE;
-            i++;
-            entry = (Entry<K,V>)tab[index1];
+            return old;
         }
+        Entry<K,V> e = overflowEntry(key);
+        if (e != null)
+            return e.value;
 
-        addEntry(hash, (K) key, value, index1);
+        addEntry(hash, key, value, -index - 1);
         return null;
     }
 
@@ -441,30 +1001,17 @@ public class HashTable<K,V> implements Map<K, V> {
     public boolean remove(Object key, Object value) {
         Objects.requireNonNull(value);
 
-        Entry<?, ?>[] tab = table;
-        int hash = key.hashCode();
-        int index1 = hash1(key);
-        int index2 = hash2(key);
-        @SuppressWarnings("unchecked")
-        Entry<K,V> e = (Entry<K,V>)tab[index1];
-        Entry<K,V> prev = null;
-        int i = 0;
-        while (e != null && i < count) {
-            if ((e.hash == hash) && e.key.equals(key) && e.value.equals(value)) {
-                if (prev != null) {
-                    prev.next = e.next;
-                } else {
-                    tab[index1] = e.next;
-                }
-                e.value = null;
-                countMod++;
-                count--;
-                return true;
-            }
-            index1 = (index1 + index2) % TABLE_SIZE;
-            i++;
-            prev = e;
-            e = (Entry<K,V>)tab[index1];
+        int index = indexOf(key);
+        if (index >= 0) {
+            if (!table[index].value.equals(value))
+                return false;
+            removeAt(index);
+            return true;
+        }
+        Entry<K,V> e = overflowEntry(key);
+        if (e != null && e.value.equals(value)) {
+            removeOverflow(key);
+            return true;
         }
         return false;
     }
@@ -472,165 +1019,132 @@ public class HashTable<K,V> implements Map<K, V> {
     @Override
     public boolean replace(K key, V oldValue, V newValue) {
         if (oldValue == null || newValue == null) return false;
-        Entry<?, ?>[] tab = table;
-        int hash = key.hashCode();
-        int index1 = hash1(key);
-        int index2 = hash2(key);
-        @SuppressWarnings("unchecked")
-        Entry<K,V> e = (Entry<K,V>)tab[index1];
-        int i = 0;
-        while (e != null && i < count) {
-            if ((e.hash == hash) && e.key.equals(key)) {
-                if (e.value.equals(oldValue)) {
-                    e.value = newValue;
-                    return true;
-                } else {
-                    return false;
-                }
-            }
-            index1 = (index1 + index2) % TABLE_SIZE;
-            i++;
-            e = (Entry<K,V>)tab[index1];
+        Entry<K,V> e = entryFor(key);
+        if (e == null)
+            return false;
+        if (e.value.equals(oldValue)) {
+            e.value = newValue;
+            return true;
+        } else {
+            return false;
         }
-        return false;
     }
 
     @Override
     public V replace(K key, V value) {
         Objects.requireNonNull(value);
-        Entry<?, ?>[] tab = table;
-        int hash = key.hashCode();
-        int index1 = hash1(key);
-        int index2 = hash2(key);
-        @SuppressWarnings("unchecked")
-        Entry<K,V> e = (Entry<K,V>)tab[index1];
-        int i = 0;
-        while (e != null && i < count) {
-            if ((e.hash == hash) && e.key.equals(key)) {
-                V oldValue = e.value;
-                e.value = value;
-                return oldValue;
-            }
-            index1 = (index1 + index2) % TABLE_SIZE;
-            i++;
-            e = (Entry<K,V>)tab[index1];
-        }
-        return null;
+        Entry<K,V> e = entryFor(key);
+        if (e == null)
+            return null;
+        V oldValue = e.value;
+        e.value = value;
+        return oldValue;
     }
 
     @Override
     public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
         Objects.requireNonNull(mappingFunction);
 
-        Entry<?, ?>[] tab = table;
-        int hash = key.hashCode();
-        int index1 = hash1(key);
-        int index2 = hash2(key);
-        @SuppressWarnings("unchecked")
-        Entry<K,V> e = (Entry<K,V>)tab[index1];
-        int i =0;
-        while (e != null && i < count) {
-            if (e.hash == hash && e.key.equals(key)) {
-                return e.value;
-            }
-            index1 = (index2 + index1) % TABLE_SIZE;
-            i++;
-            e = (Entry<K,V>)tab[index1];
+        int hash = strategy.hash(key);
+        int index = slotFor(key, hash);
+        if (index >= 0) {
+            return (V) table[index].value;
         }
+        Entry<K,V> e = overflowEntry(key);
+        if (e != null)
+            return e.value;
 
         int mc = countMod;
+        int insertionProbes = insertProbes;
+        boolean migrating = oldTable != null;
         V newValue = mappingFunction.apply(key);
         if (mc != countMod) { throw new ConcurrentModificationException(); }
         if (newValue != null) {
-            addEntry(hash, (K) key, newValue, index1);
+            index = insertionPoint(key, hash, index, insertionProbes, migrating);
+            addEntry(hash, key, newValue, index);
         }
 
         return newValue;
     }
 
+    /**
+     * Точка вставки после пользовательской функции. countMod ловит только
+     * изменения таблицы; get() внутри функции во время перехеширования мог
+     * перенести запись из старой таблицы как раз в найденную ячейку, поэтому
+     * тогда ключ ищется заново.
+     */
+    private int insertionPoint(Object key, int hash, int index, int insertionProbes, boolean migrating) {
+        if (migrating)
+            return -slotFor(key, hash) - 1;
+        insertProbes = insertionProbes;
+        return -index - 1;
+    }
+
     @Override
     public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
         Objects.requireNonNull(remappingFunction);
 
-        Entry<?, ?>[] tab = table;
-        int hash = key.hashCode();
-        int index1 = hash1(key);
-        int index2 = hash2(key);
-        @SuppressWarnings("unchecked")
-        Entry<K,V> e = (Entry<K,V>)tab[index1];
-        Entry<K,V> prev = null;
-        int i = 0;
-        while (e != null && i < count) {
-            if (e.hash == hash && e.key.equals(key)) {
-                int mc = countMod;
-                V newValue = remappingFunction.apply(key, e.value);
-                if (mc != countMod) {
-                    throw new ConcurrentModificationException();
-                }
-                if (newValue == null) {
-                    if (prev != null) {
-                        prev.next = e.next;
-                    } else {
-                        tab[index1] = e.next;
-                    }
-                    countMod = mc + 1;
-                    count--;
-                } else {
-                    e.value = newValue;
-                }
-                return newValue;
-            }
-            index1 = (index2 + index1) % TABLE_SIZE;
-            i++;
-            prev = e;
-            e = (Entry<K,V>)tab[index1];
+        int index = indexOf(key);
+        if (index >= 0)
+            return remap(index, remappingFunction.apply(key, (V) table[index].value));
+        Entry<K,V> e = overflowEntry(key);
+        return e == null ? null : remapOverflow(e, remappingFunction.apply(key, e.value));
+    }
+
+    // записывает результат функции в найденную запись, null означает удаление
+    private V remap(int index, V newValue) {
+        if (newValue == null) {
+            removeAt(index);
+        } else {
+            ((Entry<K,V>) table[index]).value = newValue;
         }
-        return null;
+        return newValue;
+    }
+
+    private V remapOverflow(Entry<K,V> e, V newValue) {
+        if (newValue == null) {
+            removeOverflow(e.key);
+        } else {
+            e.value = newValue;
+        }
+        return newValue;
+    }
+
+    // запись с этим ключом в таблице или в дереве
+    private Entry<K,V> entryFor(Object key) {
+        int index = indexOf(key);
+        return index >= 0 ? (Entry<K,V>) table[index] : overflowEntry(key);
     }
 
     @Override
     public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
         Objects.requireNonNull(remappingFunction);
 
-        Entry<?, ?>[] tab = table;
-        int hash = key.hashCode();
-        int index1 = hash1(key);
-        int index2 = hash2(key);
-        @SuppressWarnings("unchecked")
-        Entry<K,V> e = (Entry<K,V>)tab[index1];
-        Entry<K,V> prev = null;
-        int i = 0;
-        while (e != null && i < count) {
-            if (e.hash == hash && Objects.equals(e.key, key)) {
-                int mc = countMod;
-                V newValue = remappingFunction.apply(key, e.value);
-                if (mc != countMod) {
-                    throw new ConcurrentModificationException();
-                }
-                if (newValue == null) {
-                    if (prev != null) {
-                        prev.next = e.next;
-                    } else {
-                        tab[index1] = e.next;
-                    }
-                    countMod = mc + 1;
-                    count--;
-                } else {
-                    e.value = newValue;
-                }
-                return newValue;
+        int hash = strategy.hash(key);
+        int index = slotFor(key, hash);
+        int mc = countMod;
+        if (index >= 0) {
+            V newValue = remappingFunction.apply(key, (V) table[index].value);
+            if (mc != countMod) {
+                throw new ConcurrentModificationException();
             }
-            index1 = (index2 + index1) % TABLE_SIZE;
-            i++;
-            prev = e;
-            e = (Entry<K,V>)tab[index1];
+            return remap(index, newValue);
+        }
+        Entry<K,V> e = overflowEntry(key);
+        if (e != null) {
+            V newValue = remappingFunction.apply(key, e.value);
+            if (mc != countMod)
+                throw new ConcurrentModificationException();
+            return remapOverflow(e, newValue);
         }
 
-        int mc = countMod;
+        int insertionProbes = insertProbes;
+        boolean migrating = oldTable != null;
         V newValue = remappingFunction.apply(key, null);
         if (mc != countMod) { throw new ConcurrentModificationException(); }
         if (newValue != null) {
-            addEntry(hash, (K) key, newValue, index1);
+            index = insertionPoint(key, hash, index, insertionProbes, migrating);
+            addEntry(hash, key, newValue, index);
         }
 
         return newValue;
@@ -640,42 +1154,27 @@ public class HashTable<K,V> implements Map<K, V> {
     public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
         Objects.requireNonNull(remappingFunction);
 
-        Entry<?,?> tab[] = table;
-        int hash = key.hashCode();
-        int index1 = hash1(key);
-        int index2 = hash2(key);
-        @SuppressWarnings("unchecked")
-        Entry<K,V> e = (Entry<K,V>)tab[index1];
-        Entry<K,V> prev = null;
-        int i = 0;
-        while (e != null && i < count) {
-            if (e.hash == hash && e.key.equals(key)) {
-                int mc = countMod;
-                V newValue = remappingFunction.apply(e.value, value);
-                if (mc != countMod) {
-                    throw new ConcurrentModificationException();
-                }
-                if (newValue == null) {
-                    if (prev != null) {
-                        prev.next = e.next;
-                    } else {
-                        tab[index1] = e.next;
-                    }
-                    countMod = mc + 1;
-                    count--;
-                } else {
-                    e.value = newValue;
-                }
-                return newValue;
+        int hash = strategy.hash(key);
+        int index = slotFor(key, hash);
+        if (index >= 0) {
+            int mc = countMod;
+            V newValue = remappingFunction.apply((V) table[index].value, value);
+            if (mc != countMod) {
+                throw new ConcurrentModificationException();
             }
-            index1 = (index2 + index1) % TABLE_SIZE;
-            i++;
-            prev = e;
-            e = (Entry<K,V>)tab[index1];
+            return remap(index, newValue);
+        }
+        Entry<K,V> e = overflowEntry(key);
+        if (e != null) {
+            int mc = countMod;
+            V newValue = remappingFunction.apply(e.value, value);
+            if (mc != countMod)
+                throw new ConcurrentModificationException();
+            return remapOverflow(e, newValue);
         }
 
         if (value != null) {
-            addEntry(hash, (K) key, value, index1);
+            addEntry(hash, key, value, -index - 1);
         }
 
         return value;
@@ -715,12 +1214,18 @@ public class HashTable<K,V> implements Map<K, V> {
             throw new NullPointerException();
         }
 
+        finishRehash();
         Entry<?,?> []tab = table;
         for (int i = tab.length ; i-- > 0 ;) {
-            for (Entry<?,?> e = tab[i]; e != null ; e = e.next) {
-                if (e.value.equals(value)) {
+            Entry<?,?> e = tab[i];
+            if (e != null && e != DELETED && e.value.equals(value)) {
+                return true;
+            }
+        }
+        if (overflow != null) {
+            for (Entry<K,V> e : overflow.values()) {
+                if (e.value.equals(value))
                     return true;
-                }
             }
         }
         return false;
@@ -755,18 +1260,22 @@ public class HashTable<K,V> implements Map<K, V> {
             return h;
 
         loadFactor = -loadFactor;
+        finishRehash();
         Entry<?,?>[] tab = table;
         for (Entry<?,?> entry : tab) {
-            while (entry != null) {
+            if (entry != null && entry != DELETED)
+                h += entry.hashCode();
+        }
+        if (overflow != null) {
+            for (Entry<K,V> entry : overflow.values())
                 h += entry.hashCode();
-                entry = entry.next;
-            }
         }
         loadFactor = -loadFactor;
         return h;
     }
 
     private <T> Enumeration<T> getEnumeration(int type) {
+        finishRehash();
         if (count == 0) {
             return Collections.emptyEnumeration();
         } else {
@@ -775,6 +1284,7 @@ public class HashTable<K,V> implements Map<K, V> {
     }
 
     private <T> Iterator<T> getIterator(int type) {
+        finishRehash();
         if (count == 0) {
             return Collections.emptyIterator();
         } else {
@@ -782,17 +1292,343 @@ public class HashTable<K,V> implements Map<K, V> {
         }
     }
 
+    /**
+     * Пишет снимок таблицы: заголовок с ёмкостью, модулем и loadFactor, номера
+     * ячеек-надгробий, затем записи вместе с номером ячейки и хешем.
+     * {@link #readFrom} раскладывает записи по тем же ячейкам без пробирования.
+     * Канал не закрывается.
+     */
+    public void writeTo(WritableByteChannel channel, Codec<? super K> keyCodec, Codec<? super V> valueCodec)
+            throws IOException {
+        Objects.requireNonNull(keyCodec);
+        Objects.requireNonNull(valueCodec);
+        finishRehash();
+        final int expectedCountMod = countMod;
+        Entry<?,?>[] tab = table;
+        int overflowSize = overflowSize();
+        SnapshotIO.Writer out = new SnapshotIO.Writer(channel);
+        try {
+            out.reserve(33)
+                    .putInt(SnapshotIO.MAGIC)
+                    .putInt(SnapshotIO.VERSION)
+                    .put((byte) (sizing == SizingPolicy.PRIME ? 0 : sizing == SizingPolicy.POWER_OF_TWO ? 1 : 2))
+                    .putFloat(Math.abs(loadFactor))
+                    .putInt(tab.length)
+                    .putInt(geometry.prime)
+                    .putInt(count)
+                    .putInt(deleted)
+                    .putInt(overflowSize);
+            for (int i = 0; i < tab.length; i++) {
+                if (tab[i] == DELETED)
+                    out.reserve(4).putInt(i);
+            }
+            for (int i = 0; i < tab.length; i++) {
+                Entry<K,V> e = (Entry<K,V>) tab[i];
+                if (e == null || e == DELETED)
+                    continue;
+                out.reserve(8).putInt(i).putInt(e.hash);
+                out.write(keyCodec, e.key);
+                out.write(valueCodec, e.value);
+            }
+            if (overflow != null) {
+                for (Entry<K,V> e : overflow.values()) {
+                    out.reserve(4).putInt(e.hash);
+                    out.write(keyCodec, e.key);
+                    out.write(valueCodec, e.value);
+                }
+            }
+        } finally {
+            out.close();
+        }
+        if (expectedCountMod != countMod)
+            throw new ConcurrentModificationException();
+    }
+
+    public static <K,V> HashTable<K,V> readFrom(ReadableByteChannel channel, Codec<K> keyCodec, Codec<V> valueCodec)
+            throws IOException {
+        return readFrom(channel, keyCodec, valueCodec, HashStrategy.HASH_CODE);
+    }
+
+    /**
+     * Читает снимок из {@link #writeTo}. Запись ложится в свою ячейку, если хеш
+     * ключа по strategy совпал с записанным; иначе (другая стратегия, другой ключ
+     * SipHash) она вставляется обычным put(). Канал не закрывается.
+     */
+    public static <K,V> HashTable<K,V> readFrom(ReadableByteChannel channel, Codec<K> keyCodec, Codec<V> valueCodec,
+                                                HashStrategy<? super K> strategy) throws IOException {
+        SnapshotIO.Reader in = new SnapshotIO.Reader(channel);
+        ByteBuffer header = in.require(33);
+        if (header.getInt() != SnapshotIO.MAGIC)
+            throw new IOException("Not a HashTable snapshot");
+        int version = header.getInt();
+        if (version != SnapshotIO.VERSION)
+            throw new IOException("Unsupported HashTable snapshot version " + version);
+        byte kind = header.get();
+        float loadFactor = header.getFloat();
+        int capacity = header.getInt();
+        int prime = header.getInt();
+        int count = header.getInt();
+        int deleted = header.getInt();
+        int overflowSize = header.getInt();
+        if (capacity <= 0 || count < 0 || deleted < 0 || overflowSize < 0 || overflowSize > count
+                || count + deleted > capacity + overflowSize || !(loadFactor > 0))
+            throw new IOException("Corrupted HashTable snapshot header");
+
+        SizingPolicy sizing = kind == 1 ? SizingPolicy.POWER_OF_TWO : SizingPolicy.PRIME;
+        HashTable<K,V> t = new HashTable<>(capacity, loadFactor, sizing, strategy);
+        // своя политика размера или другая ёмкость - ячейки не совпадут, раскладываем заново
+        boolean direct = kind != 2 && t.table.length == capacity && t.geometry.prime == prime;
+        Entry<?,?>[] tab = t.table;
+        List<Entry<K,V>> pending = new ArrayList<>();
+
+        for (int i = 0; i < deleted; i++) {
+            int slot = in.readInt();
+            if (direct && slot >= 0 && slot < capacity && tab[slot] == null) {
+                tab[slot] = DELETED;
+                t.deleted++;
+            }
+        }
+        for (int i = count - overflowSize; i > 0; i--) {
+            ByteBuffer b = in.require(8);
+            int slot = b.getInt();
+            int hash = b.getInt();
+            K key = in.read(keyCodec);
+            V value = Objects.requireNonNull(in.read(valueCodec));
+            Entry<K,V> e = new Entry<>(hash, key, value);
+            if (direct && slot >= 0 && slot < capacity && tab[slot] == null
+                    && t.strategy.hash(key) == hash) {
+                tab[slot] = e;
+                t.count++;
+            } else {
+                // надгробие держит цепочки пробирования соседей
+                if (direct && slot >= 0 && slot < capacity && tab[slot] == null) {
+                    tab[slot] = DELETED;
+                    t.deleted++;
+                }
+                pending.add(e);
+            }
+        }
+        for (int i = 0; i < overflowSize; i++) {
+            int hash = in.readInt();
+            K key = in.read(keyCodec);
+            V value = Objects.requireNonNull(in.read(valueCodec));
+            Entry<K,V> e = new Entry<>(hash, key, value);
+            if (direct && t.strategy.hash(key) == hash && t.mayOverflow(key)) {
+                t.toOverflow(e);
+                t.count++;
+            } else {
+                pending.add(e);
+            }
+        }
+        for (Entry<K,V> e : pending)
+            t.put(e.key, e.value);
+        if (t.count + t.deleted >= t.threshold)
+            t.rehash();
+        t.countMod++;
+        return t;
+    }
+
+    /**
+     * Новый курсор в начале таблицы, см. {@link MapCursor}.
+     */
+    public MapCursor<K,V> cursor() {
+        return new TableCursor();
+    }
+
+    private class TableCursor implements MapCursor<K,V> {
+        Entry<?,?>[] tab;
+        int index;
+        Entry<K,V> current;
+        Entry<?,?>[] rest; // копия дерева переполнения, обычно null
+        int restIndex;
+        int expectedCountMod;
+
+        TableCursor() {
+            reset();
+        }
+
+        @Override
+        public void reset() {
+            finishRehash();
+            tab = table;
+            index = 0;
+            current = null;
+            rest = overflow == null ? null : overflow.values().toArray(new Entry<?,?>[0]);
+            restIndex = 0;
+            expectedCountMod = countMod;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean advance() {
+            if (countMod != expectedCountMod)
+                throw new ConcurrentModificationException();
+            Entry<?,?>[] t = tab;
+            for (int i = index; i < t.length; i++) {
+                Entry<?,?> e = t[i];
+                if (e != null && e != DELETED) {
+                    index = i + 1;
+                    current = (Entry<K,V>) e;
+                    return true;
+                }
+            }
+            index = t.length;
+            if (rest != null && restIndex < rest.length) {
+                current = (Entry<K,V>) rest[restIndex++];
+                return true;
+            }
+            current = null;
+            return false;
+        }
+
+        private Entry<K,V> current() {
+            if (current == null)
+                throw new IllegalStateException("Cursor is not on an entry");
+            return current;
+        }
+
+        @Override
+        public K key() {
+            return current().key;
+        }
+
+        @Override
+        public V value() {
+            return current().value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            Objects.requireNonNull(value);
+            Entry<K,V> e = current();
+            V old = e.value;
+            e.value = value;
+            return old;
+        }
+
+        @Override
+        public void remove() {
+            Entry<K,V> e = current();
+            if (countMod != expectedCountMod)
+                throw new ConcurrentModificationException();
+            // надгробие на месте записи не сдвигает остальные, проход не сбивается
+            if (restIndex == 0)
+                removeAt(index - 1);
+            else
+                removeOverflow(e.key);
+            expectedCountMod = countMod;
+            current = null;
+        }
+    }
+
+    private <T> Spliterator<T> getSpliterator(int type) {
+        finishRehash();
+        Entry<?,?>[] rest = overflow == null ? null : overflow.values().toArray(new Entry<?,?>[0]);
+        return new TableSpliterator<>(table, 0, table.length, rest, count, type);
+    }
+
+    /**
+     * Обходит ячейки [index, fence) таблицы и делится пополам по индексам.
+     * Записи дерева переполнения достаются куску, в котором конец таблицы.
+     * Точный размер известен только до первого деления.
+     */
+    private class TableSpliterator<T> implements Spliterator<T> {
+        final Entry<?,?>[] tab;
+        int index;
+        final int fence;
+        Entry<?,?>[] rest;
+        int restIndex;
+        int est;
+        boolean exact;
+        final int type;
+        final int expectedCountMod = countMod;
+
+        TableSpliterator(Entry<?,?>[] tab, int index, int fence, Entry<?,?>[] rest, int est, int type) {
+            this.tab = tab;
+            this.index = index;
+            this.fence = fence;
+            this.rest = rest;
+            this.est = est;
+            this.exact = index == 0 && fence == tab.length;
+            this.type = type;
+        }
+
+        @SuppressWarnings("unchecked")
+        private T element(Entry<?,?> e) {
+            return type == KEYS ? (T) e.key : (type == VALUES ? (T) e.value : (T) e);
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            int lo = index;
+            int mid = (lo + fence) >>> 1;
+            if (lo >= mid)
+                return null;
+            index = mid;
+            est >>>= 1;
+            exact = false;
+            return new TableSpliterator<>(tab, lo, mid, null, est, type);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            Objects.requireNonNull(action);
+            while (index < fence) {
+                Entry<?,?> e = tab[index++];
+                if (e != null && e != DELETED) {
+                    action.accept(element(e));
+                    if (countMod != expectedCountMod)
+                        throw new ConcurrentModificationException();
+                    return true;
+                }
+            }
+            if (rest != null && restIndex < rest.length) {
+                action.accept(element(rest[restIndex++]));
+                if (countMod != expectedCountMod)
+                    throw new ConcurrentModificationException();
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            Objects.requireNonNull(action);
+            Entry<?,?>[] t = tab;
+            for (int i = index, hi = fence; i < hi; i++) {
+                Entry<?,?> e = t[i];
+                if (e != null && e != DELETED)
+                    action.accept(element(e));
+            }
+            index = fence;
+            if (rest != null) {
+                while (restIndex < rest.length)
+                    action.accept(element(rest[restIndex++]));
+            }
+            if (countMod != expectedCountMod)
+                throw new ConcurrentModificationException();
+        }
+
+        @Override
+        public long estimateSize() {
+            return est;
+        }
+
+        @Override
+        public int characteristics() {
+            return (exact ? SIZED : 0) | (type == VALUES ? 0 : DISTINCT) | NONNULL;
+        }
+    }
+
     static class Entry<K,V> implements Map.Entry<K,V> {
         final int hash;
         final K key;
         V value;
-        Entry<K,V> next;
 
-        protected Entry(int hash, K key, V value, Entry<K,V> next) {
+        protected Entry(int hash, K key, V value) {
             this.hash = hash;
             this.key =  key;
             this.value = value;
-            this.next = next;
         }
 
         public K getKey() {
@@ -820,8 +1656,9 @@ public class HashTable<K,V> implements Map<K, V> {
                     (value==null ? e.getValue()==null : value.equals(e.getValue()));
         }
 
+        // по контракту Map.Entry, а не по хешу стратегии
         public int hashCode() {
-            return hash ^ Objects.hashCode(value);
+            return Objects.hashCode(key) ^ Objects.hashCode(value);
         }
 
         public String toString() {
@@ -838,6 +1675,9 @@ public class HashTable<K,V> implements Map<K, V> {
         int index = table.length;
         Entry<?,?> entry;
         Entry<?,?> last;
+        int lastIndex; // -1 для записи из дерева переполнения
+        // после таблицы - копия дерева, оно маленькое
+        Iterator<Entry<K,V>> rest = overflow == null ? null : overflow.values().iterator();
         final int type;
         final boolean iterator;
         protected int expectedCountMod = HashTable.this.countMod;
@@ -854,7 +1694,11 @@ public class HashTable<K,V> implements Map<K, V> {
             Entry<?,?>[] t = table;
             while (e == null && i > 0) {
                 e = t[--i];
+                if (e == DELETED)
+                    e = null;
             }
+            if (e == null && rest != null && rest.hasNext())
+                e = rest.next();
             entry = e;
             index = i;
             return e != null;
@@ -867,12 +1711,17 @@ public class HashTable<K,V> implements Map<K, V> {
             Entry<?,?>[] t = table;
             while (et == null && i > 0) {
                 et = t[--i];
+                if (et == DELETED)
+                    et = null;
             }
+            if (et == null && rest != null && rest.hasNext())
+                et = rest.next();
             entry = et;
             index = i;
             if (et != null) {
                 Entry<?,?> e = last = entry;
-                entry = e.next;
+                lastIndex = i == 0 && t[0] != e ? -1 : i;
+                entry = null;
                 return type == KEYS ? (T)e.key : (type == VALUES ? (T)e.value : (T)e);
             }
             throw new NoSuchElementException("Hashtable Enumerator");
@@ -899,33 +1748,17 @@ public class HashTable<K,V> implements Map<K, V> {
             if (countMod != expectedCountMod)
                 throw new ConcurrentModificationException();
 
-            synchronized(HashTable.this) {
-                Entry<?,?>[] tab = HashTable.this.table;
-                int index1 = hash1(last);
-                int index2 = hash2(last);
-
-                Entry<K,V> e = (Entry<K,V>)tab[(index1 + index2) % tab.length];
-                Entry<K,V> prev = null;
-                int i = 0;
-                while (e != null && i < count) {
-                    if (e == last) {
-                        if (prev == null)
-                            tab[index1] = e.next;
-                        else
-                            prev.next = e.next;
-                        expectedCountMod++;
-                        last = null;
-                        HashTable.this.countMod++;
-                        HashTable.this.count--;
-                        return;
-                    }
-                    index1 = (index2 + index1) % TABLE_SIZE;
-                    i++;
-                    prev = e;
-                    e = (Entry<K,V>)tab[index1];
-                }
-                throw new ConcurrentModificationException();
+            if (lastIndex < 0) {
+                if (overflow == null || overflow.get(last.hash, last.key) != last)
+                    throw new ConcurrentModificationException();
+                removeOverflow(last.key);
+            } else {
+                if (table != HashTable.this.table || table[lastIndex] != last)
+                    throw new ConcurrentModificationException();
+                removeAt(lastIndex);
             }
+            expectedCountMod++;
+            last = null;
         }
     }
-}
\ No newline at end of file
+}
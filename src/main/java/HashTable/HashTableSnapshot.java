@@ -0,0 +1,27 @@
+package HashTable;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Ссылка на текущий {@link FrozenHashTable}. Новый снимок строится целиком
+ * в потоке публикации и подменяется одной атомарной записью, читатели видят
+ * либо старый, либо новый снимок.
+ */
+public class HashTableSnapshot<K,V> {
+
+    private final AtomicReference<FrozenHashTable<K,V>> current;
+
+    public HashTableSnapshot(Map<? extends K, ? extends V> m) {
+        current = new AtomicReference<>(FrozenHashTable.copyOf(m));
+    }
+
+    public FrozenHashTable<K,V> get() {
+        return current.get();
+    }
+
+    // возвращает предыдущий снимок
+    public FrozenHashTable<K,V> publish(Map<? extends K, ? extends V> m) {
+        return current.getAndSet(FrozenHashTable.copyOf(m));
+    }
+}
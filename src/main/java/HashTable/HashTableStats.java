@@ -0,0 +1,268 @@
+package HashTable;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Снимок статистики {@link HashTable}: длины пробирования по операциям,
+ * попадания и промахи get, перехеширования и заполненность таблицы.
+ * Счётчики собираются, только если включить {@link HashTable#setStatsEnabled(boolean)};
+ * без этого в снимке лишь размеры таблицы.
+ *
+ * Гистограмма длин пробирования логарифмическая: корзина i считает операции
+ * с длиной до 2^i включительно, последняя - всё длиннее {@link HashTable#MAX_PROBES}.
+ */
+public final class HashTableStats {
+
+    public enum Operation { GET, PUT, REMOVE }
+
+    public static final int BUCKETS = 8;
+
+    private final int size;
+    private final int capacity;
+    private final int tombstones;
+    private final int overflow;
+    private final long[][] histograms;
+    private final long[] probes;
+    private final long hits;
+    private final long misses;
+    private final long rehashes;
+    private final long rehashNanos;
+
+    HashTableStats(int size, int capacity, int tombstones, int overflow, Recorder r) {
+        this.size = size;
+        this.capacity = capacity;
+        this.tombstones = tombstones;
+        this.overflow = overflow;
+        this.histograms = new long[Operation.values().length][];
+        this.probes = new long[histograms.length];
+        for (int i = 0; i < histograms.length; i++)
+            histograms[i] = r == null ? new long[BUCKETS] : r.histograms[i].clone();
+        if (r != null)
+            System.arraycopy(r.probes, 0, probes, 0, probes.length);
+        this.hits = r == null ? 0 : r.hits;
+        this.misses = r == null ? 0 : r.misses;
+        this.rehashes = r == null ? 0 : r.rehashes;
+        this.rehashNanos = r == null ? 0 : r.rehashNanos;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int tombstones() {
+        return tombstones;
+    }
+
+    // записи в дереве переполнения ячеек не занимают
+    public int emptySlots() {
+        return capacity - (size - overflow) - tombstones;
+    }
+
+    public int overflowSize() {
+        return overflow;
+    }
+
+    public double loadFactor() {
+        return (double) (size - overflow) / capacity;
+    }
+
+    public double tombstoneRatio() {
+        return (double) tombstones / capacity;
+    }
+
+    public double emptyRatio() {
+        return (double) emptySlots() / capacity;
+    }
+
+    public long[] probeHistogram(Operation op) {
+        return histograms[op.ordinal()].clone();
+    }
+
+    public long operations(Operation op) {
+        long n = 0;
+        for (long c : histograms[op.ordinal()])
+            n += c;
+        return n;
+    }
+
+    public double meanProbes(Operation op) {
+        long n = operations(op);
+        return n == 0 ? 0 : (double) probes[op.ordinal()] / n;
+    }
+
+    public long hits() {
+        return hits;
+    }
+
+    public long misses() {
+        return misses;
+    }
+
+    public double hitRatio() {
+        long n = hits + misses;
+        return n == 0 ? 0 : (double) hits / n;
+    }
+
+    public long rehashes() {
+        return rehashes;
+    }
+
+    public long rehashNanos() {
+        return rehashNanos;
+    }
+
+    static int bucket(int probes) {
+        if (probes > HashTable.MAX_PROBES)
+            return BUCKETS - 1;
+        return Math.min(32 - Integer.numberOfLeadingZeros(Math.max(probes, 1) - 1), BUCKETS - 2);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("HashTableStats{size=").append(size)
+                .append(", capacity=").append(capacity)
+                .append(", tombstones=").append(tombstones)
+                .append(", overflow=").append(overflow)
+                .append(", hits=").append(hits)
+                .append(", misses=").append(misses)
+                .append(", rehashes=").append(rehashes)
+                .append(", rehashNanos=").append(rehashNanos);
+        for (Operation op : Operation.values())
+            sb.append(", ").append(op).append('=').append(Arrays.toString(histograms[op.ordinal()]));
+        return sb.append('}').toString();
+    }
+
+    /**
+     * Регистрирует таблицу в платформенном MBeanServer. Имя вида "HashTable:name=sessions".
+     * Атрибуты читаются из потока JMX прямо из полей таблицы и счётчиков
+     * {@link Recorder}, без снимка и без записи в таблицу, поэтому могут
+     * немного отставать от потока, который с ней работает.
+     */
+    public static ObjectName register(HashTable<?,?> table, String name) throws JMException {
+        Objects.requireNonNull(table);
+        ObjectName objectName = new ObjectName("HashTable", "name", name);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        server.registerMBean(new Bean(table), objectName);
+        return objectName;
+    }
+
+    public static void unregister(ObjectName name) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+    }
+
+    private static final class Bean implements HashTableStatsMXBean {
+        private final HashTable<?,?> table;
+
+        Bean(HashTable<?,?> table) {
+            this.table = table;
+        }
+
+        public int getSize() {
+            return table.size();
+        }
+
+        public int getCapacity() {
+            return table.geometry().capacity();
+        }
+
+        public double getLoadFactor() {
+            return (double) (table.size() - table.overflowSize()) / getCapacity();
+        }
+
+        public double getTombstoneRatio() {
+            return (double) table.tombstones() / getCapacity();
+        }
+
+        public double getEmptyRatio() {
+            return 1 - getLoadFactor() - getTombstoneRatio();
+        }
+
+        public int getOverflowSize() {
+            return table.overflowSize();
+        }
+
+        public double getHitRatio() {
+            Recorder r = table.recorder();
+            if (r == null)
+                return 0;
+            long hits = r.hits;
+            long n = hits + r.misses;
+            return n == 0 ? 0 : (double) hits / n;
+        }
+
+        public long getRehashCount() {
+            Recorder r = table.recorder();
+            return r == null ? 0 : r.rehashes;
+        }
+
+        public long getRehashNanos() {
+            Recorder r = table.recorder();
+            return r == null ? 0 : r.rehashNanos;
+        }
+
+        private long[] histogram(Operation op) {
+            Recorder r = table.recorder();
+            return r == null ? new long[BUCKETS] : r.histograms[op.ordinal()].clone();
+        }
+
+        public long[] getGetProbeHistogram() {
+            return histogram(Operation.GET);
+        }
+
+        public long[] getPutProbeHistogram() {
+            return histogram(Operation.PUT);
+        }
+
+        public long[] getRemoveProbeHistogram() {
+            return histogram(Operation.REMOVE);
+        }
+
+        public boolean isStatsEnabled() {
+            return table.isStatsEnabled();
+        }
+
+        public void setStatsEnabled(boolean enabled) {
+            table.setStatsEnabled(enabled);
+        }
+    }
+
+    /**
+     * Изменяемые счётчики внутри таблицы. Не синхронизированы, поэтому
+     * {@link StampedHashTable} с параллельными читателями статистику не включает.
+     */
+    static final class Recorder {
+        final long[][] histograms = new long[Operation.values().length][BUCKETS];
+        final long[] probes = new long[histograms.length];
+        long hits;
+        long misses;
+        long rehashes;
+        long rehashNanos;
+
+        void probed(Operation op, int length) {
+            histograms[op.ordinal()][bucket(length)]++;
+            probes[op.ordinal()] += length;
+        }
+
+        void lookup(int length, boolean found) {
+            probed(Operation.GET, length);
+            if (found)
+                hits++;
+            else
+                misses++;
+        }
+
+        void rehashed(long nanos) {
+            rehashes++;
+            rehashNanos += nanos;
+        }
+    }
+}
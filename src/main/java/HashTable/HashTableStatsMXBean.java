@@ -0,0 +1,35 @@
+package HashTable;
+
+/**
+ * Атрибуты JMX для {@link HashTableStats#register(HashTable, String)}.
+ */
+public interface HashTableStatsMXBean {
+
+    int getSize();
+
+    int getCapacity();
+
+    double getLoadFactor();
+
+    double getTombstoneRatio();
+
+    double getEmptyRatio();
+
+    int getOverflowSize();
+
+    double getHitRatio();
+
+    long getRehashCount();
+
+    long getRehashNanos();
+
+    long[] getGetProbeHistogram();
+
+    long[] getPutProbeHistogram();
+
+    long[] getRemoveProbeHistogram();
+
+    boolean isStatsEnabled();
+
+    void setStatsEnabled(boolean enabled);
+}
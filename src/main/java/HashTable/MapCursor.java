@@ -0,0 +1,33 @@
+package HashTable;
+
+/**
+ * Курсор по записям таблицы без аллокаций на каждую запись.
+ * Один курсор можно обходить много раз через {@link #reset()}.
+ *
+ * <pre>
+ * MapCursor&lt;String, Long&gt; c = table.cursor();
+ * while (c.advance())
+ *     total += c.value();
+ * </pre>
+ *
+ * Менять таблицу в обход курсора во время прохода нельзя, следующий
+ * {@link #advance()} бросит ConcurrentModificationException.
+ */
+public interface MapCursor<K,V> {
+
+    // переходит к следующей записи, false - записи кончились
+    boolean advance();
+
+    K key();
+
+    V value();
+
+    // заменяет значение текущей записи и возвращает старое
+    V setValue(V value);
+
+    // удаляет текущую запись, проход продолжается со следующей
+    void remove();
+
+    // возвращает курсор в начало таблицы
+    void reset();
+}
@@ -0,0 +1,460 @@
+package HashTable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * Хеш-таблица в файле, отображённом в память. Открытие не читает файл:
+ * страницы подгружаются при первом обращении, записи уходят в кеш страниц,
+ * {@link #force()} даёт точку сохранности. Между вызовами force() ОС сбрасывает
+ * страницы в любом порядке, так что файл после сбоя согласован только
+ * на момент последнего force().
+ *
+ * Файл: [заголовок 64 байта][записи и массивы ячеек...]. Ячейка 16 байт:
+ * [смещение записи 8][хеш 4][длина ключа 4], смещение 0 - пусто, -1 - надгробие.
+ * Пробирование - двойное хеширование по {@link Geometry}, как в {@link HashTable}.
+ * Запись [длина ключа 4][длина значения 4][ключ][значение] только дописывается
+ * в конец; put существующего ключа пишет новую запись, старая остаётся мусором.
+ * При росте новый массив ячеек тоже дописывается в конец, заголовок
+ * переключается на него последним.
+ *
+ * Хеш считается по байтам закодированного ключа, а не по hashCode(),
+ * поэтому раскладка не зависит от JVM и переживает перезапуск.
+ */
+public final class MappedHashTable<K,V> implements Closeable {
+
+    private static final int MAGIC = 0x4D48544C; // "MHTL"
+    private static final int VERSION = 1;
+    private static final int HEADER = 64;
+    private static final int SLOT = 16;
+    private static final int SEGMENT_SHIFT = 26;
+    private static final long SEGMENT_BYTES = 1L << SEGMENT_SHIFT; // 64 МБ, запись через границу не переходит
+    private static final long DELETED = -1;
+
+    private final FileChannel channel;
+    private final Codec<K> keyCodec;
+    private final Codec<V> valueCodec;
+    private final float loadFactor;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private ByteBuffer scratch = ByteBuffer.allocate(256); // закодированный ключ
+    private Geometry geometry;
+    private long slots; // смещение массива ячеек
+    private long dataEnd;
+    private int count;
+    private int deleted;
+    private int threshold;
+    private int countMod;
+
+    private MappedHashTable(FileChannel channel, Codec<K> keyCodec, Codec<V> valueCodec, float loadFactor) {
+        this.channel = channel;
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.loadFactor = loadFactor;
+    }
+
+    public static <K,V> MappedHashTable<K,V> open(Path file, Codec<K> keyCodec, Codec<V> valueCodec)
+            throws IOException {
+        return open(file, keyCodec, valueCodec, 11, 0.75f);
+    }
+
+    /**
+     * Открывает файл или создаёт новую таблицу. initialCapacity и loadFactor
+     * нужны только новому файлу, у существующего они записаны в заголовке.
+     */
+    public static <K,V> MappedHashTable<K,V> open(Path file, Codec<K> keyCodec, Codec<V> valueCodec,
+                                                  int initialCapacity, float loadFactor) throws IOException {
+        Objects.requireNonNull(keyCodec);
+        Objects.requireNonNull(valueCodec);
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal Capacity: "+
+                    initialCapacity);
+        if (loadFactor <= 0 || loadFactor >= 1 || Float.isNaN(loadFactor))
+            throw new IllegalArgumentException("Illegal Load: "+loadFactor);
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                MappedHashTable<K,V> t = new MappedHashTable<>(channel, keyCodec, valueCodec, loadFactor);
+                int capacity = SizingPolicy.PRIME.capacityFor(initialCapacity);
+                t.slots = HEADER;
+                t.dataEnd = HEADER + (long) capacity * SLOT;
+                t.setGeometry(capacity);
+                t.writeHeader();
+                return t;
+            }
+            ByteBuffer h = ByteBuffer.allocate(HEADER);
+            while (h.hasRemaining() && channel.read(h, h.position()) > 0) {
+                // читаем заголовок целиком
+            }
+            h.flip();
+            if (h.remaining() < HEADER || h.getInt(0) != MAGIC)
+                throw new IOException("Not a MappedHashTable file: " + file);
+            if (h.getInt(4) != VERSION)
+                throw new IOException("Unsupported MappedHashTable version " + h.getInt(4));
+            int capacity = h.getInt(8);
+            int count = h.getInt(16);
+            int deleted = h.getInt(20);
+            long slots = h.getLong(24);
+            long dataEnd = h.getLong(32);
+            float lf = h.getFloat(40);
+            // заголовок мог пережить сбой без своих ячеек, доверять ему вслепую нельзя
+            if (!(lf > 0 && lf < 1) || capacity < 3 || count < 0 || deleted < 0
+                    || (long) count + deleted >= capacity || slots < HEADER
+                    || dataEnd < slots + (long) capacity * SLOT || dataEnd > channel.size())
+                throw new IOException("Corrupt MappedHashTable header: " + file);
+            MappedHashTable<K,V> t = new MappedHashTable<>(channel, keyCodec, valueCodec, lf);
+            t.count = count;
+            t.deleted = deleted;
+            t.slots = slots;
+            t.dataEnd = dataEnd;
+            t.setGeometry(capacity);
+            return t;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void setGeometry(int capacity) {
+        geometry = SizingPolicy.PRIME.geometry(capacity);
+        threshold = (int) Math.min(capacity * loadFactor, capacity - 1);
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer h = segment(0);
+        h.putInt(0, MAGIC);
+        h.putInt(4, VERSION);
+        h.putInt(8, geometry.capacity);
+        h.putInt(12, geometry.prime);
+        h.putInt(16, count);
+        h.putInt(20, deleted);
+        h.putLong(24, slots);
+        h.putLong(32, dataEnd);
+        h.putFloat(40, loadFactor);
+    }
+
+    private void writeCounts() {
+        ByteBuffer h = segments.get(0);
+        h.putInt(16, count);
+        h.putInt(20, deleted);
+        h.putLong(32, dataEnd);
+    }
+
+    // сегменты отображаются лениво, файл растёт вместе с ними
+    private MappedByteBuffer segment(long position) throws IOException {
+        if (!channel.isOpen())
+            throw new IllegalStateException("MappedHashTable is closed");
+        int index = (int) (position >>> SEGMENT_SHIFT);
+        while (segments.size() <= index)
+            segments.add(null);
+        MappedByteBuffer seg = segments.get(index);
+        if (seg == null) {
+            seg = channel.map(FileChannel.MapMode.READ_WRITE, (long) index << SEGMENT_SHIFT, SEGMENT_BYTES);
+            segments.set(index, seg);
+        }
+        return seg;
+    }
+
+    private static int offset(long position) {
+        return (int) (position & (SEGMENT_BYTES - 1));
+    }
+
+    private long slotPosition(long tableStart, int index) {
+        return tableStart + (long) index * SLOT;
+    }
+
+    private ByteBuffer encode(K key) {
+        for (;;) {
+            scratch.clear();
+            try {
+                keyCodec.write(Objects.requireNonNull(key), scratch);
+                scratch.flip();
+                return scratch;
+            } catch (BufferOverflowException e) {
+                scratch = ByteBuffer.allocate(scratch.capacity() << 1);
+            }
+        }
+    }
+
+    // FNV-1a по байтам и финализатор murmur3
+    private static int hashOf(ByteBuffer key) {
+        int h = 0x811C9DC5;
+        for (int i = key.position(); i < key.limit(); i++)
+            h = (h ^ key.get(i)) * 0x01000193;
+        return HashStrategy.murmur3(h);
+    }
+
+    private boolean keyEquals(long record, ByteBuffer key) throws IOException {
+        ByteBuffer seg = segment(record);
+        int p = offset(record) + 8;
+        int n = key.remaining();
+        int k = key.position();
+        for (int i = 0; i < n; i++) {
+            if (seg.get(p + i) != key.get(k + i))
+                return false;
+        }
+        return true;
+    }
+
+    // номер ячейки с ключом или -(точка вставки) - 1
+    private int slotFor(ByteBuffer key, int hash) throws IOException {
+        Geometry g = geometry;
+        int index = g.hash1(hash);
+        int step = g.hash2(hash);
+        int free = -1;
+        for (int i = 0; i < g.capacity; i++) {
+            long pos = slotPosition(slots, index);
+            ByteBuffer seg = segment(pos);
+            int off = offset(pos);
+            long record = seg.getLong(off);
+            if (record == 0)
+                return -(free < 0 ? index : free) - 1;
+            if (record == DELETED) {
+                if (free < 0)
+                    free = index;
+            } else if (seg.getInt(off + 8) == hash && seg.getInt(off + 12) == key.remaining()
+                    && keyEquals(record, key)) {
+                return index;
+            }
+            index = g.next(index, step);
+        }
+        // пустую ячейку держит put(), так что сюда не попасть; поиск всё равно только промахивается
+        return free < 0 ? -1 : -free - 1;
+    }
+
+    private long recordAt(int index) throws IOException {
+        long pos = slotPosition(slots, index);
+        return segment(pos).getLong(offset(pos));
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public Geometry geometry() {
+        return geometry;
+    }
+
+    // сколько байт файла занято, вместе с мусором от перезаписей
+    public long dataSize() {
+        return dataEnd;
+    }
+
+    public boolean containsKey(K key) throws IOException {
+        ByteBuffer k = encode(key);
+        return slotFor(k, hashOf(k)) >= 0;
+    }
+
+    public V get(K key) throws IOException {
+        ByteBuffer k = encode(key);
+        int index = slotFor(k, hashOf(k));
+        return index < 0 ? null : readValue(recordAt(index));
+    }
+
+    private V readValue(long record) throws IOException {
+        ByteBuffer seg = segment(record);
+        int off = offset(record);
+        int keyLength = seg.getInt(off);
+        int valueLength = seg.getInt(off + 4);
+        ByteBuffer b = seg.duplicate();
+        b.limit(off + 8 + keyLength + valueLength);
+        b.position(off + 8 + keyLength);
+        return valueCodec.read(b);
+    }
+
+    private K readKey(long record) throws IOException {
+        ByteBuffer seg = segment(record);
+        int off = offset(record);
+        ByteBuffer b = seg.duplicate();
+        b.limit(off + 8 + seg.getInt(off));
+        b.position(off + 8);
+        return keyCodec.read(b);
+    }
+
+    /**
+     * Дописывает запись и направляет на неё ячейку ключа.
+     * Возвращает true, если ключ уже был в таблице.
+     */
+    public boolean put(K key, V value) throws IOException {
+        Objects.requireNonNull(value);
+        ByteBuffer k = encode(key);
+        int hash = hashOf(k);
+        int index = slotFor(k, hash);
+        // без последней пустой ячейки поиск промаха не остановится; место могут вернуть только надгробия
+        if (index < 0 && recordAt(-index - 1) != DELETED && count + deleted >= geometry.capacity - 1) {
+            if (deleted == 0)
+                throw new IllegalStateException("Hash table is full");
+            rehash();
+            index = slotFor(k, hash);
+        }
+        long record = append(k, value);
+
+        boolean present = index >= 0;
+        if (!present) {
+            index = -index - 1;
+            if (recordAt(index) == DELETED)
+                deleted--;
+            count++;
+        }
+        long pos = slotPosition(slots, index);
+        ByteBuffer seg = segment(pos);
+        int off = offset(pos);
+        seg.putInt(off + 8, hash);
+        seg.putInt(off + 12, k.remaining());
+        seg.putLong(off, record);
+        countMod++;
+        writeCounts();
+        if (!present && count + deleted >= threshold)
+            rehash();
+        return present;
+    }
+
+    private long append(ByteBuffer key, V value) throws IOException {
+        int keyLength = key.remaining();
+        long start = dataEnd;
+        for (;;) {
+            ByteBuffer seg = segment(start);
+            int off = offset(start);
+            ByteBuffer b = seg.duplicate();
+            b.position(off + 8);
+            try {
+                b.put(key.duplicate());
+                valueCodec.write(value, b);
+            } catch (BufferOverflowException e) {
+                // запись не влезла в остаток сегмента, переносим её в начало следующего
+                if (off == 0)
+                    throw new IllegalArgumentException("Entry is larger than " + SEGMENT_BYTES + " bytes");
+                start = (start | (SEGMENT_BYTES - 1)) + 1;
+                continue;
+            }
+            seg.putInt(off, keyLength);
+            seg.putInt(off + 4, b.position() - off - 8 - keyLength);
+            dataEnd = (start + b.position() - off + 7) & ~7L;
+            return start;
+        }
+    }
+
+    public boolean remove(K key) throws IOException {
+        ByteBuffer k = encode(key);
+        int index = slotFor(k, hashOf(k));
+        if (index < 0)
+            return false;
+        long pos = slotPosition(slots, index);
+        segment(pos).putLong(offset(pos), DELETED);
+        count--;
+        deleted++;
+        countMod++;
+        writeCounts();
+        return true;
+    }
+
+    private void rehash() throws IOException {
+        Geometry old = geometry;
+        long oldSlots = slots;
+        int newCapacity = count >= threshold >> 1 ? SizingPolicy.PRIME.grow(old.capacity) : old.capacity;
+        if (newCapacity == old.capacity && deleted == 0) {
+            // расти некуда: заполняем до последней пустой ячейки, дальше put() откажет
+            threshold = old.capacity - 1;
+            return;
+        }
+        // новый массив - в конце данных, ячейки не пересекают границ сегментов
+        long newSlots = (dataEnd + SLOT - 1) & -SLOT;
+        Geometry g = SizingPolicy.PRIME.geometry(newCapacity);
+        for (int i = 0; i < newCapacity; i++) {
+            long pos = slotPosition(newSlots, i);
+            segment(pos).putLong(offset(pos), 0);
+        }
+        for (int i = 0; i < old.capacity; i++) {
+            long from = slotPosition(oldSlots, i);
+            ByteBuffer fromSeg = segment(from);
+            int fromOff = offset(from);
+            long record = fromSeg.getLong(fromOff);
+            if (record == 0 || record == DELETED)
+                continue;
+            int hash = fromSeg.getInt(fromOff + 8);
+            int index = g.hash1(hash);
+            int step = g.hash2(hash);
+            while (true) {
+                long to = slotPosition(newSlots, index);
+                ByteBuffer toSeg = segment(to);
+                int toOff = offset(to);
+                if (toSeg.getLong(toOff) == 0) {
+                    toSeg.putLong(toOff, record);
+                    toSeg.putInt(toOff + 8, hash);
+                    toSeg.putInt(toOff + 12, fromSeg.getInt(fromOff + 12));
+                    break;
+                }
+                index = g.next(index, step);
+            }
+        }
+        slots = newSlots;
+        dataEnd = newSlots + (long) newCapacity * SLOT;
+        deleted = 0;
+        setGeometry(newCapacity);
+        if (count >= threshold)
+            threshold = newCapacity - 1;
+        countMod++;
+        writeHeader();
+    }
+
+    public void forEach(BiConsumer<? super K, ? super V> action) throws IOException {
+        Objects.requireNonNull(action);
+        int expectedCountMod = countMod;
+        for (int i = 0; i < geometry.capacity; i++) {
+            long record = recordAt(i);
+            if (record == 0 || record == DELETED)
+                continue;
+            action.accept(readKey(record), readValue(record));
+            if (expectedCountMod != countMod)
+                throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * Сбрасывает изменённые страницы на диск; после возврата файл на диске
+     * согласован. Заголовок сбрасывается последним, но это держит только
+     * внутри вызова: между вызовами ОС может записать заголовок раньше
+     * ячеек, на которые он ссылается, и сбой в это время оставит файл
+     * несогласованным. Что должно пережить сбой, подтверждайте force().
+     */
+    public void force() throws IOException {
+        for (int i = segments.size(); i-- > 1; ) {
+            MappedByteBuffer seg = segments.get(i);
+            if (seg != null)
+                seg.force();
+        }
+        segment(0).force();
+    }
+
+    /**
+     * Отпускает отображение и файл. Без {@link #force()} данные попадут
+     * на диск, когда их сбросит ОС.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!channel.isOpen())
+            return;
+        for (MappedByteBuffer seg : segments) {
+            if (seg != null)
+                OffHeapHashTable.release(seg);
+        }
+        segments.clear();
+        channel.close();
+    }
+}
@@ -0,0 +1,345 @@
+package HashTable;
+
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.ConcurrentModificationException;
+import java.util.Objects;
+
+/**
+ * Хеш-таблица вне кучи для ключей и значений фиксированной длины.
+ * Ячейки лежат в прямых {@link ByteBuffer} по 1 ГБ, поэтому сборщик мусора
+ * их не обходит, а таблица может быть больше 2 ГБ. Пробирование - двойное
+ * хеширование по {@link Geometry}, как в {@link HashTable}.
+ * Память освобождается явно через {@link #close()}.
+ *
+ * Ячейка: [состояние 1 байт][хеш 4 байта][ключ][значение].
+ */
+public class OffHeapHashTable implements AutoCloseable {
+
+    public interface EntryConsumer {
+        // буферы - копии в куче, переиспользуются от записи к записи; данные между position и limit
+        void accept(ByteBuffer key, ByteBuffer value);
+    }
+
+    private static final byte EMPTY = 0;
+    private static final byte FULL = 1;
+    private static final byte DELETED = 2;
+    private static final int SEGMENT_BYTES = 1 << 30;
+    private static final int HEADER = 5;
+
+    private final int keySize;
+    private final int valueSize;
+    private final int slotSize;
+    private final int slotsPerSegment;
+    private final float loadFactor;
+    private final SizingPolicy sizing;
+    private ByteBuffer[] segments;
+    private Geometry geometry;
+    private int count;
+    private int deleted;
+    private int threshold; // порог для перехеширования
+
+    public OffHeapHashTable(int keySize, int valueSize, int initialCapacity, float loadFactor) {
+        if (keySize <= 0 || valueSize < 0 || (long) HEADER + keySize + valueSize > SEGMENT_BYTES)
+            throw new IllegalArgumentException("Illegal slot: key " + keySize + ", value " + valueSize);
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal Capacity: "+
+                    initialCapacity);
+        if (loadFactor <= 0 || loadFactor >= 1 || Float.isNaN(loadFactor))
+            throw new IllegalArgumentException("Illegal Load: "+loadFactor);
+
+        this.keySize = keySize;
+        this.valueSize = valueSize;
+        this.slotSize = HEADER + keySize + valueSize;
+        this.slotsPerSegment = SEGMENT_BYTES / slotSize;
+        this.loadFactor = loadFactor;
+        this.sizing = SizingPolicy.PRIME;
+        allocate(sizing.capacityFor(initialCapacity));
+    }
+
+    public OffHeapHashTable(int keySize, int valueSize, int initialCapacity) {
+        this(keySize, valueSize, initialCapacity, 0.75f);
+    }
+
+    public OffHeapHashTable(int keySize, int valueSize) {
+        this(keySize, valueSize, 11, 0.75f);
+    }
+
+    private void allocate(int capacity) {
+        int n = (int) (((long) capacity + slotsPerSegment - 1) / slotsPerSegment);
+        ByteBuffer[] segs = new ByteBuffer[n];
+        for (int i = 0; i < n; i++) {
+            int slots = Math.min(slotsPerSegment, capacity - i * slotsPerSegment);
+            // allocateDirect уже заполняет память нулями, т.е. EMPTY
+            segs[i] = ByteBuffer.allocateDirect(slots * slotSize);
+        }
+        segments = segs;
+        geometry = sizing.geometry(capacity);
+        threshold = (int) Math.min(capacity * loadFactor, capacity - 1);
+        deleted = 0;
+    }
+
+    private ByteBuffer segment(int index) {
+        return segments[index / slotsPerSegment];
+    }
+
+    private int offset(int index) {
+        return (index % slotsPerSegment) * slotSize;
+    }
+
+    private static int hashOf(byte[] key) {
+        int h = 1;
+        for (byte b : key)
+            h = 31 * h + b;
+        return h;
+    }
+
+    private void checkOpen() {
+        if (segments == null)
+            throw new IllegalStateException("OffHeapHashTable is closed");
+    }
+
+    private void checkKey(byte[] key) {
+        if (key.length != keySize)
+            throw new IllegalArgumentException("Key must be " + keySize + " bytes: " + key.length);
+    }
+
+    private boolean keyEquals(ByteBuffer seg, int off, byte[] key) {
+        int p = off + HEADER;
+        for (int i = 0; i < key.length; i++) {
+            if (seg.get(p + i) != key[i])
+                return false;
+        }
+        return true;
+    }
+
+    // индекс ключа или -(точка вставки) - 1
+    private int slotFor(byte[] key, int hash) {
+        Geometry g = geometry;
+        int index = g.hash1(hash);
+        int step = g.hash2(hash);
+        int free = -1;
+        for (int i = 0; i < g.capacity; i++) {
+            ByteBuffer seg = segment(index);
+            int off = offset(index);
+            byte state = seg.get(off);
+            if (state == EMPTY)
+                return -(free < 0 ? index : free) - 1;
+            if (state == DELETED) {
+                if (free < 0)
+                    free = index;
+            } else if (seg.getInt(off + 1) == hash && keyEquals(seg, off, key)) {
+                return index;
+            }
+            index = g.next(index, step);
+        }
+        // пустую ячейку держит put(), так что сюда не попасть; поиск всё равно только промахивается
+        return free < 0 ? -1 : -free - 1;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public Geometry geometry() {
+        return geometry;
+    }
+
+    public boolean containsKey(byte[] key) {
+        checkOpen();
+        checkKey(key);
+        return slotFor(key, hashOf(key)) >= 0;
+    }
+
+    /**
+     * Копирует значение в {@code value}. Возвращает false, если ключа нет.
+     */
+    public boolean get(byte[] key, byte[] value) {
+        checkOpen();
+        checkKey(key);
+        int index = slotFor(key, hashOf(key));
+        if (index < 0)
+            return false;
+        ByteBuffer seg = segment(index);
+        int p = offset(index) + HEADER + keySize;
+        for (int i = 0; i < valueSize; i++)
+            value[i] = seg.get(p + i);
+        return true;
+    }
+
+    /**
+     * Записывает значение. Возвращает true, если ключ уже был в таблице.
+     */
+    public boolean put(byte[] key, byte[] value) {
+        checkOpen();
+        checkKey(key);
+        if (value.length != valueSize)
+            throw new IllegalArgumentException("Value must be " + valueSize + " bytes: " + value.length);
+
+        int hash = hashOf(key);
+        int index = slotFor(key, hash);
+        boolean present = index >= 0;
+        if (!present) {
+            index = -index - 1;
+            // без последней пустой ячейки поиск промаха не остановится; место могут вернуть только надгробия
+            if (segment(index).get(offset(index)) != DELETED && count + deleted >= geometry.capacity - 1) {
+                if (deleted == 0)
+                    throw new IllegalStateException("Hash table is full");
+                rehash();
+                index = -slotFor(key, hash) - 1;
+            }
+            if (segment(index).get(offset(index)) == DELETED)
+                deleted--;
+            count++;
+        }
+        write(segment(index), offset(index), hash, key, value);
+        if (!present && count + deleted >= threshold)
+            rehash();
+        return present;
+    }
+
+    private void write(ByteBuffer seg, int off, int hash, byte[] key, byte[] value) {
+        seg.put(off, FULL);
+        seg.putInt(off + 1, hash);
+        int p = off + HEADER;
+        for (int i = 0; i < keySize; i++)
+            seg.put(p + i, key[i]);
+        p += keySize;
+        for (int i = 0; i < valueSize; i++)
+            seg.put(p + i, value[i]);
+    }
+
+    public boolean remove(byte[] key) {
+        checkOpen();
+        checkKey(key);
+        int index = slotFor(key, hashOf(key));
+        if (index < 0)
+            return false;
+        segment(index).put(offset(index), DELETED);
+        deleted++;
+        count--;
+        return true;
+    }
+
+    protected void rehash() {
+        ByteBuffer[] oldSegments = segments;
+        int oldCapacity = geometry.capacity;
+        int newCapacity = count >= threshold >> 1 ? sizing.grow(oldCapacity) : oldCapacity;
+        if (newCapacity == oldCapacity && deleted == 0) {
+            // расти некуда: заполняем до последней пустой ячейки, дальше put() откажет
+            threshold = oldCapacity - 1;
+            return;
+        }
+        allocate(newCapacity);
+        if (count >= threshold)
+            threshold = newCapacity - 1;
+
+        Geometry g = geometry;
+        for (int i = 0; i < oldCapacity; i++) {
+            ByteBuffer from = oldSegments[i / slotsPerSegment];
+            int fromOff = offset(i);
+            if (from.get(fromOff) != FULL)
+                continue;
+            int hash = from.getInt(fromOff + 1);
+            int index = g.hash1(hash);
+            int step = g.hash2(hash);
+            while (segment(index).get(offset(index)) != EMPTY)
+                index = g.next(index, step);
+            ByteBuffer to = segment(index);
+            int toOff = offset(index);
+            for (int b = 0; b < slotSize; b++)
+                to.put(toOff + b, from.get(fromOff + b));
+        }
+        for (ByteBuffer seg : oldSegments)
+            release(seg);
+    }
+
+    /**
+     * Ключ и значение копируются в буферы в куче: сегменты освобождаются
+     * при rehash() и close(), и ссылка на них, пережившая вызов, читала бы
+     * уже отданную память. Если action перехешировал или закрыл таблицу,
+     * обход обрывается ConcurrentModificationException до следующего чтения.
+     */
+    public void forEach(EntryConsumer action) {
+        Objects.requireNonNull(action);
+        checkOpen();
+        byte[] k = new byte[keySize];
+        byte[] v = new byte[valueSize];
+        ByteBuffer key = ByteBuffer.wrap(k).asReadOnlyBuffer();
+        ByteBuffer value = ByteBuffer.wrap(v).asReadOnlyBuffer();
+        ByteBuffer[] segs = segments;
+        for (ByteBuffer seg : segs) {
+            ByteBuffer src = seg.duplicate();
+            for (int off = 0; off < seg.capacity(); off += slotSize) {
+                if (seg.get(off) != FULL)
+                    continue;
+                src.position(off + HEADER);
+                src.get(k);
+                src.get(v);
+                key.clear();
+                value.clear();
+                action.accept(key, value);
+                if (segments != segs)
+                    throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    public void clear() {
+        checkOpen();
+        for (ByteBuffer seg : segments) {
+            for (int off = 0; off < seg.capacity(); off += slotSize)
+                seg.put(off, EMPTY);
+        }
+        count = 0;
+        deleted = 0;
+    }
+
+    /**
+     * Освобождает память сразу, не дожидаясь сборщика мусора.
+     * После закрытия любые операции бросают IllegalStateException.
+     */
+    @Override
+    public void close() {
+        ByteBuffer[] segs = segments;
+        if (segs == null)
+            return;
+        segments = null;
+        count = 0;
+        for (ByteBuffer seg : segs)
+            release(seg);
+    }
+
+    private static final Method INVOKE_CLEANER;
+    private static final Object UNSAFE;
+
+    static {
+        Method m = null;
+        Object unsafe = null;
+        try {
+            Class<?> c = Class.forName("sun.misc.Unsafe");
+            java.lang.reflect.Field f = c.getDeclaredField("theUnsafe");
+            f.setAccessible(true);
+            unsafe = f.get(null);
+            m = c.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException ignored) {
+            // до Java 9 метода нет, память вернёт сборщик мусора
+        }
+        INVOKE_CLEANER = m;
+        UNSAFE = unsafe;
+    }
+
+    static void release(ByteBuffer buffer) {
+        if (INVOKE_CLEANER == null || !buffer.isDirect())
+            return;
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (ReflectiveOperationException | RuntimeException ignored) {
+            // не получилось - освободит сборщик мусора
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package HashTable;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Дерево переполнения {@link HashTable} для Comparable-ключей из слишком
+ * длинных цепочек. Упорядочено по хешу записи, затем по compareTo, но ключ
+ * найден, только если его подтвердил equals стратегии: у BigDecimal 1.0 и 1.00
+ * равны по compareTo и различны по equals. Такие записи лежат в одном узле
+ * списком и перебираются по очереди, как в HashMap.TreeNode.
+ */
+final class OverflowTree<K,V> {
+
+    private final HashStrategy<Object> strategy;
+    // значение узла - запись или List записей, равных по порядку дерева
+    private final TreeMap<HashTable.Entry<?,?>, Object> tree = new TreeMap<>(OverflowTree::compare);
+    private int size;
+
+    OverflowTree(HashStrategy<Object> strategy) {
+        this.strategy = strategy;
+    }
+
+    /**
+     * Класс ключа, если он объявляет Comparable&lt;самого себя&gt;, иначе null,
+     * как HashMap.comparableClassFor: у Comparable&lt;чего-то другого&gt;
+     * compareTo на ключе своего класса бросил бы ClassCastException.
+     */
+    static Class<?> comparableClassFor(Object x) {
+        if (!(x instanceof Comparable))
+            return null;
+        Class<?> c = x.getClass();
+        if (c == String.class)
+            return c;
+        for (Type t : c.getGenericInterfaces()) {
+            if (t instanceof ParameterizedType) {
+                ParameterizedType p = (ParameterizedType) t;
+                Type[] args = p.getActualTypeArguments();
+                if (p.getRawType() == Comparable.class && args.length == 1 && args[0] == c)
+                    return c;
+            }
+        }
+        return null;
+    }
+
+    // по хешу, затем compareTo внутри одного класса, иначе по имени класса;
+    // в дерево попадают только классы с comparableClassFor, так что compareTo безопасен
+    @SuppressWarnings("unchecked")
+    private static int compare(HashTable.Entry<?,?> a, HashTable.Entry<?,?> b) {
+        if (a.hash != b.hash)
+            return Integer.compare(a.hash, b.hash);
+        Object x = a.key;
+        Object y = b.key;
+        if (x.getClass() == y.getClass())
+            return ((Comparable<Object>) x).compareTo(y);
+        return x.getClass().getName().compareTo(y.getClass().getName());
+    }
+
+    int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    HashTable.Entry<K,V> get(int hash, Object key) {
+        Object node = tree.get(new HashTable.Entry<>(hash, key, null));
+        if (node == null)
+            return null;
+        if (node instanceof HashTable.Entry) {
+            HashTable.Entry<K,V> e = (HashTable.Entry<K,V>) node;
+            return strategy.equals(e.key, key) ? e : null;
+        }
+        for (HashTable.Entry<K,V> e : (List<HashTable.Entry<K,V>>) node) {
+            if (strategy.equals(e.key, key))
+                return e;
+        }
+        return null;
+    }
+
+    /** ключа записи в дереве быть не должно, это проверяет таблица */
+    @SuppressWarnings("unchecked")
+    void add(HashTable.Entry<K,V> e) {
+        Object node = tree.get(e);
+        if (node == null) {
+            tree.put(e, e);
+        } else if (node instanceof HashTable.Entry) {
+            List<HashTable.Entry<K,V>> same = new ArrayList<>(2);
+            same.add((HashTable.Entry<K,V>) node);
+            same.add(e);
+            tree.put(e, same);
+        } else {
+            ((List<HashTable.Entry<K,V>>) node).add(e);
+        }
+        size++;
+    }
+
+    @SuppressWarnings("unchecked")
+    HashTable.Entry<K,V> remove(int hash, Object key) {
+        HashTable.Entry<K,V> probe = new HashTable.Entry<>(hash, (K) key, null);
+        Object node = tree.get(probe);
+        if (node == null)
+            return null;
+        if (node instanceof HashTable.Entry) {
+            HashTable.Entry<K,V> e = (HashTable.Entry<K,V>) node;
+            if (!strategy.equals(e.key, key))
+                return null;
+            tree.remove(probe);
+            size--;
+            return e;
+        }
+        List<HashTable.Entry<K,V>> same = (List<HashTable.Entry<K,V>>) node;
+        for (int i = 0; i < same.size(); i++) {
+            HashTable.Entry<K,V> e = same.get(i);
+            if (strategy.equals(e.key, key)) {
+                same.remove(i);
+                if (same.size() == 1)
+                    tree.put(probe, same.get(0));
+                size--;
+                return e;
+            }
+        }
+        return null;
+    }
+
+    /** копия записей: по ней можно идти, пока таблица меняется */
+    @SuppressWarnings("unchecked")
+    List<HashTable.Entry<K,V>> values() {
+        List<HashTable.Entry<K,V>> all = new ArrayList<>(size);
+        for (Object node : tree.values()) {
+            if (node instanceof HashTable.Entry)
+                all.add((HashTable.Entry<K,V>) node);
+            else
+                all.addAll((List<HashTable.Entry<K,V>>) node);
+        }
+        return all;
+    }
+}
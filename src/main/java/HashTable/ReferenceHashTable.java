@@ -0,0 +1,206 @@
+package HashTable;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * {@link HashTable} со слабыми ключами и слабыми или мягкими значениями,
+ * чтобы метаданные при загрузчиках классов и больших буферах не держали их в памяти.
+ *
+ * Ключи и значения хранятся обёрнутыми в ссылки. Своя {@link HashStrategy}
+ * разворачивает ссылку на ключ, поэтому искать можно обычным ключом, а собранные
+ * ключи ничему не равны и пробирование просто проходит мимо их ячеек. Очищенные
+ * ссылки сборщик кладёт в {@link ReferenceQueue}; каждая операция вынимает
+ * из очереди не больше {@link #DRAIN} ссылок и удаляет их записи.
+ *
+ * Слабые ключи сравниваются через equals(), как в {@link java.util.WeakHashMap}.
+ * size() - оценка сверху: в ней могут быть записи, собранные, но ещё не убранные.
+ * Класс не потокобезопасен.
+ */
+public class ReferenceHashTable<K,V> {
+
+    public enum Strength { STRONG, WEAK, SOFT }
+
+    /** сколько очищенных ссылок разбирает одна операция */
+    static final int DRAIN = 16;
+
+    private static final HashStrategy<Object> UNWRAPPING = new HashStrategy<Object>() {
+        @Override
+        public int hash(Object key) {
+            return key instanceof WeakKey ? ((WeakKey<?>) key).hash : HashStrategy.murmur3(key.hashCode());
+        }
+
+        // собранный ключ равен только самой своей ссылке, по ней его и удаляют
+        @Override
+        public boolean equals(Object a, Object b) {
+            if (a == b)
+                return true;
+            Object x = a instanceof WeakKey ? ((WeakKey<?>) a).get() : a;
+            Object y = b instanceof WeakKey ? ((WeakKey<?>) b).get() : b;
+            return x != null && y != null && x.equals(y);
+        }
+    };
+
+    private final HashTable<Object, Object> table = new HashTable<>(11, 0.75f, SizingPolicy.PRIME, UNWRAPPING);
+    private final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+    private final Strength keys;
+    private final Strength values;
+
+    public ReferenceHashTable(Strength keys, Strength values) {
+        this.keys = Objects.requireNonNull(keys);
+        this.values = Objects.requireNonNull(values);
+        if (keys == Strength.SOFT)
+            throw new IllegalArgumentException("Soft keys are not supported");
+    }
+
+    public static <K,V> ReferenceHashTable<K,V> weakKeys() {
+        return new ReferenceHashTable<>(Strength.WEAK, Strength.STRONG);
+    }
+
+    public static <K,V> ReferenceHashTable<K,V> weakValues() {
+        return new ReferenceHashTable<>(Strength.STRONG, Strength.WEAK);
+    }
+
+    public static <K,V> ReferenceHashTable<K,V> softValues() {
+        return new ReferenceHashTable<>(Strength.STRONG, Strength.SOFT);
+    }
+
+    public Strength keyStrength() {
+        return keys;
+    }
+
+    public Strength valueStrength() {
+        return values;
+    }
+
+    // убирает записи за не более чем limit очищенных ссылок
+    private void drain(int limit) {
+        for (int i = 0; i < limit; i++) {
+            Reference<?> ref = queue.poll();
+            if (ref == null)
+                return;
+            if (ref instanceof WeakKey)
+                table.remove(ref);
+            else
+                table.remove(((ValueReference) ref).key(), ref);
+        }
+    }
+
+    /** убирает все уже собранные записи; работа по длине очереди, а не таблицы */
+    public void cleanUp() {
+        drain(Integer.MAX_VALUE);
+    }
+
+    public int size() {
+        return table.size();
+    }
+
+    public boolean isEmpty() {
+        return table.isEmpty();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V unwrap(Object stored) {
+        return stored instanceof ValueReference ? ((Reference<V>) stored).get() : (V) stored;
+    }
+
+    public V get(Object key) {
+        drain(DRAIN);
+        Object stored = table.get(Objects.requireNonNull(key));
+        return stored == null ? null : unwrap(stored);
+    }
+
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    /** возвращает прежнее значение, если его ещё не собрали */
+    public V put(K key, V value) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        drain(DRAIN);
+        Object k = keys == Strength.WEAK ? new WeakKey<>(key, queue) : key;
+        Object v;
+        switch (values) {
+            case WEAK:
+                v = new WeakValue<>(k, value, queue);
+                break;
+            case SOFT:
+                v = new SoftValue<>(k, value, queue);
+                break;
+            default:
+                v = value;
+        }
+        Object old = table.put(k, v);
+        return old == null ? null : unwrap(old);
+    }
+
+    public V remove(Object key) {
+        drain(DRAIN);
+        Object old = table.remove(Objects.requireNonNull(key));
+        return old == null ? null : unwrap(old);
+    }
+
+    /** обход пропускает собранные ключи и значения */
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        table.forEach((k, v) -> {
+            @SuppressWarnings("unchecked")
+            K key = k instanceof WeakKey ? ((WeakKey<K>) k).get() : (K) k;
+            V value = unwrap(v);
+            if (key != null && value != null)
+                action.accept(key, value);
+        });
+    }
+
+    public void clear() {
+        table.clear();
+        while (queue.poll() != null) {
+            // ссылки на уже выброшенные записи
+        }
+    }
+
+    private static final class WeakKey<K> extends WeakReference<K> {
+        final int hash;
+
+        WeakKey(K key, ReferenceQueue<Object> queue) {
+            super(key, queue);
+            this.hash = HashStrategy.murmur3(key.hashCode());
+        }
+    }
+
+    // ссылка на значение помнит ключ записи, иначе её нечем удалить
+    private interface ValueReference {
+        Object key();
+    }
+
+    private static final class WeakValue<V> extends WeakReference<V> implements ValueReference {
+        private final Object key;
+
+        WeakValue(Object key, V value, ReferenceQueue<Object> queue) {
+            super(value, queue);
+            this.key = key;
+        }
+
+        public Object key() {
+            return key;
+        }
+    }
+
+    private static final class SoftValue<V> extends SoftReference<V> implements ValueReference {
+        private final Object key;
+
+        SoftValue(Object key, V value, ReferenceQueue<Object> queue) {
+            super(value, queue);
+            this.key = key;
+        }
+
+        public Object key() {
+            return key;
+        }
+    }
+}
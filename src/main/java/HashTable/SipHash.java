@@ -0,0 +1,112 @@
+package HashTable;
+
+import java.security.SecureRandom;
+
+/**
+ * SipHash-2-4 с секретным ключом. Строки и прочие {@link CharSequence}
+ * хешируются по символам, поэтому подобрать ключи с одинаковым хешем,
+ * не зная ключа SipHash, нельзя. У остальных ключей хешируется hashCode():
+ * это прячет последовательность пробирования, но полные совпадения
+ * hashCode() остаются совпадениями, их разбирает дерево переполнения в {@link HashTable}.
+ */
+final class SipHash implements HashStrategy<Object> {
+
+    private static final SecureRandom SEEDS = new SecureRandom();
+
+    private final long k0;
+    private final long k1;
+
+    SipHash(long k0, long k1) {
+        this.k0 = k0;
+        this.k1 = k1;
+    }
+
+    static SipHash random() {
+        synchronized (SEEDS) {
+            return new SipHash(SEEDS.nextLong(), SEEDS.nextLong());
+        }
+    }
+
+    @Override
+    public int hash(Object key) {
+        long h = key instanceof CharSequence ? hash((CharSequence) key) : hash(key.hashCode());
+        return (int) (h ^ (h >>> 32));
+    }
+
+    @Override
+    public boolean isNaturalEquality() {
+        return true;
+    }
+
+    private long hash(int value) {
+        State s = new State(k0, k1);
+        return s.finish((4L << 56) | (value & 0xFFFFFFFFL));
+    }
+
+    // символ - два байта, по четыре символа в слове
+    private long hash(CharSequence key) {
+        State s = new State(k0, k1);
+        int length = key.length();
+        int i = 0;
+        for (; i + 4 <= length; i += 4) {
+            s.compress(key.charAt(i)
+                    | (long) key.charAt(i + 1) << 16
+                    | (long) key.charAt(i + 2) << 32
+                    | (long) key.charAt(i + 3) << 48);
+        }
+        long last = (long) (2 * length) << 56;
+        for (int shift = 0; i < length; i++, shift += 16)
+            last |= (long) key.charAt(i) << shift;
+        return s.finish(last);
+    }
+
+    private static final class State {
+        long v0, v1, v2, v3;
+
+        State(long k0, long k1) {
+            v0 = k0 ^ 0x736F6D6570736575L;
+            v1 = k1 ^ 0x646F72616E646F6DL;
+            v2 = k0 ^ 0x6C7967656E657261L;
+            v3 = k1 ^ 0x7465646279746573L;
+        }
+
+        void compress(long m) {
+            v3 ^= m;
+            round();
+            round();
+            v0 ^= m;
+        }
+
+        long finish(long last) {
+            compress(last);
+            v2 ^= 0xFF;
+            round();
+            round();
+            round();
+            round();
+            return v0 ^ v1 ^ v2 ^ v3;
+        }
+
+        private void round() {
+            v0 += v1;
+            v1 = Long.rotateLeft(v1, 13);
+            v1 ^= v0;
+            v0 = Long.rotateLeft(v0, 32);
+            v2 += v3;
+            v3 = Long.rotateLeft(v3, 16);
+            v3 ^= v2;
+            v0 += v3;
+            v3 = Long.rotateLeft(v3, 21);
+            v3 ^= v0;
+            v2 += v1;
+            v1 = Long.rotateLeft(v1, 17);
+            v1 ^= v2;
+            v2 = Long.rotateLeft(v2, 32);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SIPHASH";
+    }
+}
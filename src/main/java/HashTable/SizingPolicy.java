@@ -0,0 +1,69 @@
+package HashTable;
+
+/**
+ * Политика размера таблицы: выбирает допустимую ёмкость, решает, как её
+ * увеличивать, и строит для неё {@link Geometry}.
+ */
+public interface SizingPolicy {
+
+    int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    int capacityFor(int requested);
+
+    // возвращает ту же ёмкость, если расти дальше некуда
+    int grow(int capacity);
+
+    Geometry geometry(int capacity);
+
+    /** Простые ёмкости, рост примерно вдвое: 11, 23, 47, ... */
+    SizingPolicy PRIME = new SizingPolicy() {
+        @Override
+        public int capacityFor(int requested) {
+            return Geometry.primeAtLeast(Math.max(requested, 3), MAX_CAPACITY);
+        }
+
+        @Override
+        public int grow(int capacity) {
+            if (capacity >= (MAX_CAPACITY - 1) >> 1)
+                return capacityFor(MAX_CAPACITY);
+            return capacityFor((capacity << 1) + 1);
+        }
+
+        @Override
+        public Geometry geometry(int capacity) {
+            return new Geometry(capacity, Geometry.primeBelow(capacity), -1);
+        }
+
+        @Override
+        public String toString() {
+            return "PRIME";
+        }
+    };
+
+    /** Ёмкости-степени двойки: индекс считается маской вместо деления. */
+    SizingPolicy POWER_OF_TWO = new SizingPolicy() {
+        static final int MAX = 1 << 30;
+
+        @Override
+        public int capacityFor(int requested) {
+            if (requested >= MAX)
+                return MAX;
+            return Math.max(4, Integer.highestOneBit(Math.max(requested, 1) - 1) << 1);
+        }
+
+        @Override
+        public int grow(int capacity) {
+            return capacity >= MAX ? MAX : capacity << 1;
+        }
+
+        @Override
+        public Geometry geometry(int capacity) {
+            return new Geometry(capacity, capacity, capacity - 1);
+        }
+
+        @Override
+        public String toString() {
+            return "POWER_OF_TWO";
+        }
+    };
+}
@@ -0,0 +1,135 @@
+package HashTable;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Буферизованные запись и чтение снимка {@link HashTable} через каналы.
+ * Буферы большие, чтобы FileChannel писал и читал крупными блоками.
+ */
+final class SnapshotIO {
+
+    static final int MAGIC = 0x4854424C; // "HTBL"
+    static final int VERSION = 1;
+    static final int BUFFER_SIZE = 1 << 20;
+
+    private SnapshotIO() {
+    }
+
+    static final class Writer {
+        private final WritableByteChannel channel;
+        private ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        Writer(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        ByteBuffer reserve(int bytes) throws IOException {
+            if (buf.remaining() < bytes)
+                flush();
+            if (buf.remaining() < bytes)
+                grow(bytes);
+            return buf;
+        }
+
+        /**
+         * Пишет значение кодеком с префиксом длины. Если значение не влезло,
+         * сбрасывает буфер и пробует снова, при необходимости с буфером побольше.
+         */
+        <T> void write(Codec<? super T> codec, T value) throws IOException {
+            for (;;) {
+                reserve(4);
+                int start = buf.position();
+                try {
+                    buf.position(start + 4);
+                    codec.write(value, buf);
+                    buf.putInt(start, buf.position() - start - 4);
+                    return;
+                } catch (BufferOverflowException e) {
+                    buf.position(start);
+                    if (start == 0)
+                        grow(buf.capacity() << 1);
+                    else
+                        flush();
+                }
+            }
+        }
+
+        private void grow(int bytes) {
+            ByteBuffer bigger = ByteBuffer.allocateDirect(Math.max(bytes, buf.capacity() << 1));
+            buf.flip();
+            bigger.put(buf);
+            OffHeapHashTable.release(buf);
+            buf = bigger;
+        }
+
+        void flush() throws IOException {
+            buf.flip();
+            while (buf.hasRemaining())
+                channel.write(buf);
+            buf.clear();
+        }
+
+        void close() throws IOException {
+            flush();
+            OffHeapHashTable.release(buf);
+        }
+    }
+
+    // буфер в куче: кодеки вроде Codec.STRING читают прямо из массива
+    static final class Reader {
+        private final ReadableByteChannel channel;
+        private ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+
+        Reader(ReadableByteChannel channel) {
+            this.channel = channel;
+            buf.flip();
+        }
+
+        // гарантирует, что в буфере есть bytes байт
+        ByteBuffer require(int bytes) throws IOException {
+            if (buf.remaining() >= bytes)
+                return buf;
+            if (bytes > buf.capacity()) {
+                ByteBuffer bigger = ByteBuffer.allocate(Math.max(bytes, buf.capacity() << 1));
+                bigger.put(buf);
+                buf = bigger;
+            } else {
+                buf.compact();
+            }
+            while (buf.position() < bytes) {
+                if (channel.read(buf) < 0)
+                    throw new EOFException("Truncated HashTable snapshot");
+            }
+            buf.flip();
+            return buf;
+        }
+
+        int readInt() throws IOException {
+            return require(4).getInt();
+        }
+
+        <T> T read(Codec<T> codec) throws IOException {
+            int length = readInt();
+            if (length < 0)
+                throw new IOException("Corrupted HashTable snapshot: length " + length);
+            ByteBuffer b = require(length);
+            int end = b.position() + length;
+            int limit = b.limit();
+            b.limit(end);
+            try {
+                T value = codec.read(b);
+                if (b.position() != end)
+                    throw new IOException("Codec read " + (b.position() - end + length) + " of " + length + " bytes");
+                return value;
+            } finally {
+                b.limit(limit);
+                b.position(end);
+            }
+        }
+    }
+}
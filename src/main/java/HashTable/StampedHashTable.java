@@ -0,0 +1,510 @@
+package HashTable;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Потокобезопасный {@link HashTable} для нагрузки "почти только чтение".
+ * get/containsKey идут без блокировки: читатель берёт оптимистичную метку
+ * {@link StampedLock}, пробирует таблицу и проверяет, что писателя за это
+ * время не было; иначе повторяет поиск под блокировкой чтения. Писатели
+ * выстраиваются в очередь на блокировке записи, putAll берёт её один раз
+ * на весь пакет.
+ *
+ * Итераторы представлений keySet/values/entrySet не защищены, для обхода
+ * есть forEach, который держит блокировку чтения. keys()/elements() отдают
+ * снимок, курсор и статистика не поддерживаются.
+ *
+ * StampedLock не реентерабелен, поэтому таблица сама помнит, какой поток
+ * её держит. Функция из compute/merge/replaceAll может читать таблицу и
+ * даже менять её (тогда, как и в HashTable, будет ConcurrentModificationException),
+ * а action из forEach/search/reduce и функции параллельных вариантов - только
+ * читать: изменение под блокировкой чтения бросает IllegalStateException
+ * вместо вечного ожидания.
+ */
+public class StampedHashTable<K,V> extends HashTable<K,V> {
+
+    private final StampedLock lock = new StampedLock();
+    private volatile Thread writer; // поток с блокировкой записи
+    // глубина блокировки чтения в потоке; у параллельных обходов - и в потоках пула
+    private final ThreadLocal<int[]> readDepth = ThreadLocal.withInitial(() -> new int[1]);
+
+    public StampedHashTable(int initialCapacity, float loadFactor, SizingPolicy sizing,
+                            HashStrategy<? super K> strategy) {
+        super(initialCapacity, loadFactor, sizing, strategy);
+    }
+
+    public StampedHashTable(int initialCapacity, float loadFactor, SizingPolicy sizing) {
+        super(initialCapacity, loadFactor, sizing);
+    }
+
+    public StampedHashTable(int initialCapacity, float loadFactor) {
+        super(initialCapacity, loadFactor);
+    }
+
+    public StampedHashTable(int initialCapacity) {
+        super(initialCapacity);
+    }
+
+    public StampedHashTable() {
+        super();
+    }
+
+    public StampedHashTable(Map<? extends K, ? extends V> m) {
+        this(Math.max(2*m.size(), 11), 0.75f);
+        putAll(m);
+    }
+
+    // 0 - блокировку уже держит этот поток
+    private long readLock() {
+        if (writer == Thread.currentThread())
+            return 0;
+        int[] depth = readDepth.get();
+        long stamp = depth[0] == 0 ? lock.readLock() : 0;
+        depth[0]++;
+        return stamp;
+    }
+
+    private void unlockRead(long stamp) {
+        if (writer == Thread.currentThread())
+            return;
+        readDepth.get()[0]--;
+        if (stamp != 0)
+            lock.unlockRead(stamp);
+    }
+
+    private long writeLock() {
+        Thread current = Thread.currentThread();
+        if (writer == current)
+            return 0;
+        if (readDepth.get()[0] > 0)
+            throw new IllegalStateException("StampedHashTable modified under its own read lock");
+        long stamp = lock.writeLock();
+        writer = current;
+        return stamp;
+    }
+
+    private void unlockWrite(long stamp) {
+        if (stamp == 0)
+            return;
+        writer = null;
+        lock.unlockWrite(stamp);
+    }
+
+    // параллельный обход зовёт функцию в потоках пула, там она тоже читает без блокировки
+    private <A,B> BiConsumer<A,B> underRead(BiConsumer<A,B> action) {
+        return (a, b) -> {
+            int[] depth = readDepth.get();
+            depth[0]++;
+            try {
+                action.accept(a, b);
+            } finally {
+                depth[0]--;
+            }
+        };
+    }
+
+    private <A,B,R> BiFunction<A,B,R> underRead(BiFunction<A,B,R> function) {
+        return (a, b) -> {
+            int[] depth = readDepth.get();
+            depth[0]++;
+            try {
+                return function.apply(a, b);
+            } finally {
+                depth[0]--;
+            }
+        };
+    }
+
+    /**
+     * Постепенное перехеширование переносит записи прямо в get(),
+     * а здесь чтение не должно ничего менять.
+     */
+    @Override
+    public void setIncrementalRehash(int slotsPerOperation) {
+        if (slotsPerOperation != 0)
+            throw new UnsupportedOperationException("Incremental rehash needs mutating reads");
+    }
+
+    /**
+     * Статистику пишет каждое чтение, а читатели здесь идут параллельно.
+     */
+    @Override
+    public void setStatsEnabled(boolean enabled) {
+        if (enabled)
+            throw new UnsupportedOperationException("Statistics need mutating reads");
+    }
+
+    /**
+     * Курсор идёт по живой таблице между вызовами, блокировку на это время не удержать.
+     */
+    @Override
+    public MapCursor<K,V> cursor() {
+        throw new UnsupportedOperationException("Cursor is not thread-safe, use forEach");
+    }
+
+    @Override
+    public FrozenHashTable<K,V> freeze() {
+        long stamp = readLock();
+        try {
+            return super.freeze();
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    // перечисление ленивое, поэтому по снимку, снятому под блокировкой чтения
+    @Override
+    public Enumeration<K> keys() {
+        long stamp = readLock();
+        try {
+            return Collections.enumeration(new ArrayList<>(keySet()));
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public Enumeration<V> elements() {
+        long stamp = readLock();
+        try {
+            return Collections.enumeration(new ArrayList<>(values()));
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public HashTableStats stats() {
+        long stamp = readLock();
+        try {
+            return super.stats();
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public V get(Object key) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                V value = super.get(key);
+                if (lock.validate(stamp))
+                    return value;
+            } catch (RuntimeException e) {
+                // таблицу меняли во время поиска, повторим под блокировкой
+                if (lock.validate(stamp))
+                    throw e;
+            }
+        }
+        stamp = readLock();
+        try {
+            return super.get(key);
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                boolean found = super.containsKey(key);
+                if (lock.validate(stamp))
+                    return found;
+            } catch (RuntimeException e) {
+                if (lock.validate(stamp))
+                    throw e;
+            }
+        }
+        stamp = readLock();
+        try {
+            return super.containsKey(key);
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean contains(Object value) {
+        long stamp = readLock();
+        try {
+            return super.contains(value);
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        long stamp = readLock();
+        try {
+            super.forEach(action);
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void forEach(long parallelismThreshold, BiConsumer<? super K, ? super V> action) {
+        long stamp = readLock();
+        try {
+            super.forEach(parallelismThreshold, underRead(action));
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public <U> U search(long parallelismThreshold, BiFunction<? super K, ? super V, ? extends U> searchFunction) {
+        long stamp = readLock();
+        try {
+            return super.search(parallelismThreshold, underRead(searchFunction));
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public K reduceKeys(long parallelismThreshold, BiFunction<? super K, ? super K, ? extends K> reducer) {
+        long stamp = readLock();
+        try {
+            return super.reduceKeys(parallelismThreshold, underRead(reducer));
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public V reduceValues(long parallelismThreshold, BiFunction<? super V, ? super V, ? extends V> reducer) {
+        long stamp = readLock();
+        try {
+            return super.reduceValues(parallelismThreshold, underRead(reducer));
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void writeTo(WritableByteChannel channel, Codec<? super K> keyCodec, Codec<? super V> valueCodec)
+            throws IOException {
+        long stamp = readLock();
+        try {
+            super.writeTo(channel, keyCodec, valueCodec);
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        long stamp = readLock();
+        try {
+            return super.equals(o);
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    // HashTable.hashCode() на время обхода меняет знак loadFactor, поэтому не чтение
+    @Override
+    public int hashCode() {
+        long stamp = writeLock();
+        try {
+            return super.hashCode();
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public String toString() {
+        long stamp = readLock();
+        try {
+            return super.toString();
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public V put(K key, V value) {
+        long stamp = writeLock();
+        try {
+            return super.put(key, value);
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        long stamp = writeLock();
+        try {
+            super.putAll(m);
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public int getAll(K[] keys, V[] out) {
+        long stamp = readLock();
+        try {
+            return super.getAll(keys, out);
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean containsAll(K[] keys) {
+        long stamp = readLock();
+        try {
+            return super.containsAll(keys);
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public int removeAll(Collection<?> keys) {
+        long stamp = writeLock();
+        try {
+            return super.removeAll(keys);
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        long stamp = writeLock();
+        try {
+            return super.remove(key);
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        long stamp = writeLock();
+        try {
+            return super.remove(key, value);
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void clear() {
+        long stamp = writeLock();
+        try {
+            super.clear();
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        long stamp = writeLock();
+        try {
+            super.replaceAll(function);
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void replaceAll(long parallelismThreshold, BiFunction<? super K, ? super V, ? extends V> function) {
+        long stamp = writeLock();
+        try {
+            super.replaceAll(parallelismThreshold, underRead(function));
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        long stamp = writeLock();
+        try {
+            return super.putIfAbsent(key, value);
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        long stamp = writeLock();
+        try {
+            return super.replace(key, oldValue, newValue);
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        long stamp = writeLock();
+        try {
+            return super.replace(key, value);
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        long stamp = writeLock();
+        try {
+            return super.computeIfAbsent(key, mappingFunction);
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        long stamp = writeLock();
+        try {
+            return super.computeIfPresent(key, remappingFunction);
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        long stamp = writeLock();
+        try {
+            return super.compute(key, remappingFunction);
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        long stamp = writeLock();
+        try {
+            return super.merge(key, value, remappingFunction);
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+}
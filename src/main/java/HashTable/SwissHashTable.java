@@ -0,0 +1,366 @@
+package HashTable;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * Хеш-таблица в духе SwissTable: ячейки собраны в группы по 8, у каждой
+ * ячейки управляющий байт - 7 младших бит хеша для занятой, EMPTY или DELETED.
+ * Байты группы лежат в одном long, и поиск сравнивает всю группу разом
+ * SWAR-приёмами: equals() вызывается только для ячеек, где совпали 7 бит
+ * хеша, так что большинство промахов до ключей вовсе не доходит.
+ *
+ * Старшие биты хеша выбирают группу, группы пробируются квадратично
+ * (шаги 1, 2, 3...), что при числе групп - степени двойки обходит все.
+ * Поиск заканчивается на первой группе, где есть EMPTY.
+ */
+public class SwissHashTable<K,V> extends AbstractMap<K,V> {
+
+    static final int GROUP = 8;
+    private static final long EMPTY = 0x80;
+    private static final long DELETED = 0xFE;
+    private static final long LSB = 0x0101010101010101L;
+    private static final long MSB = 0x8080808080808080L;
+    private static final long ALL_EMPTY = EMPTY * LSB;
+
+    private long[] ctrl; // по long на группу, байт i - ячейка i группы
+    private Object[] keys;
+    private Object[] values;
+    private int count;
+    private int deleted;
+    private int threshold;
+    private int countMod; // сколько раз таблицу изменяли
+
+    public SwissHashTable(int initialCapacity) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal Capacity: "+
+                    initialCapacity);
+        allocate(groupsFor(initialCapacity));
+    }
+
+    public SwissHashTable() {
+        this(11);
+    }
+
+    public SwissHashTable(Map<? extends K, ? extends V> m) {
+        this(m.size());
+        putAll(m);
+    }
+
+    // групп столько, чтобы entries записей уместились при загрузке 7/8
+    private static int groupsFor(int entries) {
+        long slots = (long) entries * 8 / 7 + 1;
+        long groups = Math.max(1, (slots + GROUP - 1) / GROUP);
+        if (groups > 1 << 27)
+            throw new IllegalArgumentException("Capacity too large: " + entries);
+        return groups == 1 ? 1 : Integer.highestOneBit((int) groups - 1) << 1;
+    }
+
+    private void allocate(int groups) {
+        ctrl = new long[groups];
+        Arrays.fill(ctrl, ALL_EMPTY);
+        keys = new Object[groups * GROUP];
+        values = new Object[groups * GROUP];
+        threshold = groups * GROUP - groups; // 7/8 ячеек
+        deleted = 0;
+    }
+
+    public int capacity() {
+        return keys.length;
+    }
+
+    static int spread(Object key) {
+        return HashStrategy.murmur3(key.hashCode());
+    }
+
+    // байты группы, равные b, - старшим битом в своём байте; ложное срабатывание
+    // возможно только выше настоящего совпадения и отсеивается equals()
+    static long match(long word, long b) {
+        long x = word ^ (b * LSB);
+        return (x - LSB) & ~x & MSB;
+    }
+
+    // EMPTY = 1000_0000: старший бит есть, бит 1 - нет; у DELETED бит 1 есть
+    static long matchEmpty(long word) {
+        return word & (~word << 6) & MSB;
+    }
+
+    // EMPTY и DELETED - старший бит есть, бит 0 - нет
+    static long matchFree(long word) {
+        return word & (~word << 7) & MSB;
+    }
+
+    private void setCtrl(int slot, long b) {
+        int g = slot >>> 3;
+        int shift = (slot & 7) << 3;
+        ctrl[g] = (ctrl[g] & ~(0xFFL << shift)) | (b << shift);
+    }
+
+    private long ctrlAt(int slot) {
+        return (ctrl[slot >>> 3] >>> ((slot & 7) << 3)) & 0xFF;
+    }
+
+    /**
+     * Индекс ключа или -(ячейка для вставки) - 1: первая свободная или
+     * удалённая ячейка на пути пробирования.
+     */
+    private int slotFor(Object key, int hash) {
+        long[] c = ctrl;
+        Object[] ks = keys;
+        int mask = c.length - 1;
+        long h2 = hash & 0x7F;
+        int g = (hash >>> 7) & mask;
+        int free = -1;
+        for (int step = 1; ; step++) {
+            long word = c[g];
+            for (long m = match(word, h2); m != 0; m &= m - 1) {
+                int slot = g * GROUP + (Long.numberOfTrailingZeros(m) >>> 3);
+                Object k = ks[slot];
+                if (k == key || (k != null && k.equals(key)))
+                    return slot;
+            }
+            if (free < 0) {
+                long f = matchFree(word);
+                if (f != 0)
+                    free = g * GROUP + (Long.numberOfTrailingZeros(f) >>> 3);
+            }
+            if (matchEmpty(word) != 0)
+                return -free - 1;
+            g = (g + step) & mask;
+        }
+    }
+
+    private int indexOf(Object key) {
+        int index = slotFor(key, spread(key));
+        return index < 0 ? -1 : index;
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        Objects.requireNonNull(value);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null && values[i].equals(value))
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        int index = indexOf(key);
+        return index < 0 ? null : (V) values[index];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V put(K key, V value) {
+        if (value == null)
+            throw new NullPointerException();
+
+        int hash = spread(key);
+        int index = slotFor(key, hash);
+        if (index >= 0) {
+            V old = (V) values[index];
+            values[index] = value;
+            return old;
+        }
+        if (count + deleted >= threshold) {
+            rehash();
+            index = slotFor(key, hash);
+        }
+        index = -index - 1;
+        if (ctrlAt(index) == DELETED)
+            deleted--;
+        setCtrl(index, hash & 0x7F);
+        keys[index] = key;
+        values[index] = value;
+        count++;
+        countMod++;
+        return null;
+    }
+
+    // если место съели DELETED, пересобираем тот же размер
+    protected void rehash() {
+        long[] oldCtrl = ctrl;
+        Object[] oldKeys = keys;
+        Object[] oldValues = values;
+        int groups = count >= threshold >> 1 ? oldCtrl.length << 1 : oldCtrl.length;
+        if (groups > 1 << 27)
+            throw new IllegalStateException("Hash table is full");
+        allocate(groups);
+        countMod++;
+
+        int mask = groups - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == null)
+                continue;
+            int hash = spread(oldKeys[i]);
+            int g = (hash >>> 7) & mask;
+            long f;
+            for (int step = 1; (f = matchFree(ctrl[g])) == 0; step++)
+                g = (g + step) & mask;
+            int slot = g * GROUP + (Long.numberOfTrailingZeros(f) >>> 3);
+            setCtrl(slot, hash & 0x7F);
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        int index = indexOf(key);
+        return index < 0 ? null : removeAt(index);
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        int index = indexOf(key);
+        if (index >= 0 && values[index].equals(value)) {
+            removeAt(index);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Если в группе уже есть EMPTY, ни один поиск через неё не проходил,
+     * и ячейку можно сразу сделать EMPTY; иначе нужна метка DELETED.
+     */
+    @SuppressWarnings("unchecked")
+    private V removeAt(int index) {
+        V oldValue = (V) values[index];
+        if (matchEmpty(ctrl[index >>> 3]) != 0) {
+            setCtrl(index, EMPTY);
+        } else {
+            setCtrl(index, DELETED);
+            deleted++;
+        }
+        keys[index] = null;
+        values[index] = null;
+        count--;
+        countMod++;
+        return oldValue;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(ctrl, ALL_EMPTY);
+        Arrays.fill(keys, null);
+        Arrays.fill(values, null);
+        count = 0;
+        deleted = 0;
+        countMod++;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        final int expectedCountMod = countMod;
+        Object[] ks = keys;
+        Object[] vs = values;
+        for (int i = 0; i < ks.length; i++) {
+            if (ks[i] != null) {
+                action.accept((K) ks[i], (V) vs[i]);
+                if (expectedCountMod != countMod)
+                    throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    private Set<Map.Entry<K,V>> entrySet;
+
+    @Override
+    public Set<Map.Entry<K,V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Map.Entry<K,V>>() {
+                public Iterator<Map.Entry<K,V>> iterator() {
+                    return new SlotIterator();
+                }
+                public int size() {
+                    return count;
+                }
+                public boolean contains(Object o) {
+                    if (!(o instanceof Map.Entry))
+                        return false;
+                    Map.Entry<?,?> e = (Map.Entry<?,?>) o;
+                    int index = indexOf(e.getKey());
+                    return index >= 0 && values[index].equals(e.getValue());
+                }
+                public boolean remove(Object o) {
+                    if (!(o instanceof Map.Entry))
+                        return false;
+                    Map.Entry<?,?> e = (Map.Entry<?,?>) o;
+                    return SwissHashTable.this.remove(e.getKey(), e.getValue());
+                }
+                public void clear() {
+                    SwissHashTable.this.clear();
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    // запись, собранная при обходе; setValue пишет обратно в таблицу
+    private class EntryView extends AbstractMap.SimpleEntry<K,V> {
+        EntryView(K key, V value) {
+            super(key, value);
+        }
+
+        @Override
+        public V setValue(V value) {
+            if (value == null)
+                throw new NullPointerException();
+            put(getKey(), value);
+            return super.setValue(value);
+        }
+    }
+
+    // удаление ничего не двигает, поэтому обход просто идёт по ячейкам
+    private class SlotIterator implements Iterator<Map.Entry<K,V>> {
+        int next;
+        int last = -1;
+        int expectedCountMod = countMod;
+
+        @Override
+        public boolean hasNext() {
+            Object[] ks = keys;
+            while (next < ks.length && ks[next] == null)
+                next++;
+            return next < ks.length;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Map.Entry<K,V> next() {
+            if (countMod != expectedCountMod)
+                throw new ConcurrentModificationException();
+            if (!hasNext())
+                throw new NoSuchElementException("SwissHashTable Iterator");
+            last = next++;
+            return new EntryView((K) keys[last], (V) values[last]);
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0)
+                throw new IllegalStateException("SwissHashTable Iterator");
+            if (countMod != expectedCountMod)
+                throw new ConcurrentModificationException();
+            removeAt(last);
+            last = -1;
+            expectedCountMod = countMod;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package HashTable;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Хеш-таблица с ключами @K@ и значениями @V@ без упаковки.
+ * Файл сгенерирован из src/main/template/PrimitiveHashTable.java.tpl, правится шаблон.
+ * Пробирование то же, что в {@link HashTable}: двойное хеширование по {@link Geometry}
+ * и надгробия при удалении. Пустая ячейка помечается ключом 0, сам ключ 0 хранится
+ * отдельно, поэтому в get/put/remove нет ни одной аллокации.
+ */
+public class @CLASS@@GENERIC@ {
+
+    public interface EntryConsumer@GENERIC@ {
+        void accept(@K@ key, @V@ value);
+    }
+
+    private static final @K@ FREE = 0;
+
+    private @K@[] keys;
+    private @VARR@[] values;
+    private long[] deleted; // биты надгробий для ячеек с ключом FREE
+    private int count; // ключи в массиве, без ключа FREE
+    private int tombstones;
+    private boolean hasFreeKey;
+    private @V@ freeValue;
+    private final float loadFactor;
+    private int threshold; // порог для перехеширования
+    private final SizingPolicy sizing;
+    private Geometry geometry;
+
+    public @CLASS@(int initialCapacity, float loadFactor, SizingPolicy sizing) {
+        this.sizing = Objects.requireNonNull(sizing);
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal Capacity: "+
+                    initialCapacity);
+        if (loadFactor <= 0 || Float.isNaN(loadFactor))
+            throw new IllegalArgumentException("Illegal Load: "+loadFactor);
+
+        this.loadFactor = loadFactor;
+        allocate(sizing.capacityFor(initialCapacity));
+    }
+
+    public @CLASS@(int initialCapacity, float loadFactor) {
+        this(initialCapacity, loadFactor, SizingPolicy.PRIME);
+    }
+
+    public @CLASS@(int initialCapacity) {
+        this(initialCapacity, 0.75f);
+    }
+
+    public @CLASS@() {
+        this(11, 0.75f);
+    }
+
+    private void allocate(int capacity) {
+        keys = new @K@[capacity];
+        values = new @VARR@[capacity];
+        deleted = new long[(capacity + 63) >>> 6];
+        tombstones = 0;
+        geometry = sizing.geometry(capacity);
+        threshold = (int)Math.min(capacity * loadFactor, capacity - 1);
+    }
+
+    public Geometry geometry() {
+        return geometry;
+    }
+
+    private boolean isDeleted(int index) {
+        return (deleted[index >>> 6] & (1L << index)) != 0;
+    }
+
+    // индекс ключа или -(точка вставки) - 1
+    private int slotFor(@K@ key, int hash) {
+        @K@[] ks = keys;
+        Geometry g = geometry;
+        int index = g.hash1(hash);
+        int step = g.hash2(hash);
+        int free = -1;
+        for (int i = 0; i < ks.length; i++) {
+            @K@ k = ks[index];
+            if (k == key)
+                return index;
+            if (k == FREE) {
+                if (!isDeleted(index))
+                    return -(free < 0 ? index : free) - 1;
+                if (free < 0)
+                    free = index;
+            }
+            index = g.next(index, step);
+        }
+        // пустую ячейку держит put(), так что сюда не попасть; поиск всё равно только промахивается
+        return free < 0 ? -1 : -free - 1;
+    }
+
+    public int size() {
+        return hasFreeKey ? count + 1 : count;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public boolean containsKey(@K@ key) {
+        if (key == FREE)
+            return hasFreeKey;
+        return slotFor(key, @KBOX@.hashCode(key)) >= 0;
+    }
+
+    public boolean containsValue(@V@ value) {
+        if (hasFreeKey && valueEquals(freeValue, value))
+            return true;
+        @K@[] ks = keys;
+        for (int i = ks.length; i-- > 0; ) {
+            if (ks[i] != FREE && valueEquals(@CAST@values[i], value))
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean valueEquals(@VARG@ a, @VARG@ b) {
+        return @VALUE_EQUALS@;
+    }
+
+    public @V@ get(@K@ key) {
+        return getOrDefault(key, @NO_VALUE@);
+    }
+
+    public @V@ getOrDefault(@K@ key, @V@ defaultValue) {
+        if (key == FREE)
+            return hasFreeKey ? freeValue : defaultValue;
+        int index = slotFor(key, @KBOX@.hashCode(key));
+        return index < 0 ? defaultValue : @CAST@values[index];
+    }
+
+    public @V@ put(@K@ key, @V@ value) {
+        @CHECK_VALUE@
+        if (key == FREE) {
+            @V@ old = hasFreeKey ? freeValue : @NO_VALUE@;
+            hasFreeKey = true;
+            freeValue = value;
+            return old;
+        }
+
+        int index = slotFor(key, @KBOX@.hashCode(key));
+        if (index >= 0) {
+            @V@ old = @CAST@values[index];
+            values[index] = value;
+            return old;
+        }
+        index = -index - 1;
+        // без последней пустой ячейки поиск промаха не остановится; место могут вернуть только надгробия
+        if (!isDeleted(index) && count + tombstones >= keys.length - 1) {
+            if (tombstones == 0)
+                throw new IllegalStateException("Hash table is full");
+            rehash();
+            index = -slotFor(key, @KBOX@.hashCode(key)) - 1;
+        }
+        if (isDeleted(index)) {
+            deleted[index >>> 6] &= ~(1L << index);
+            tombstones--;
+        }
+        keys[index] = key;
+        values[index] = value;
+        if (++count + tombstones >= threshold)
+            rehash();
+        return @NO_VALUE@;
+    }
+
+    public @V@ remove(@K@ key) {
+        if (key == FREE) {
+            @V@ old = hasFreeKey ? freeValue : @NO_VALUE@;
+            hasFreeKey = false;
+            freeValue = @NO_VALUE@;
+            return old;
+        }
+
+        int index = slotFor(key, @KBOX@.hashCode(key));
+        if (index < 0)
+            return @NO_VALUE@;
+        @V@ old = @CAST@values[index];
+        keys[index] = FREE;
+        values[index] = @NO_VALUE@;
+        deleted[index >>> 6] |= 1L << index;
+        tombstones++;
+        count--;
+        return old;
+    }
+
+    protected void rehash() {
+        @K@[] oldKeys = keys;
+        @VARR@[] oldValues = values;
+        int oldCapacity = oldKeys.length;
+
+        // если место съели надгробия, достаточно пересобрать таблицу того же размера
+        int newCapacity = count >= threshold >> 1 ? sizing.grow(oldCapacity) : oldCapacity;
+        if (newCapacity == oldCapacity && tombstones == 0) {
+            // расти некуда: заполняем до последней пустой ячейки, дальше put() откажет
+            threshold = oldCapacity - 1;
+            return;
+        }
+        allocate(newCapacity);
+        if (count >= threshold)
+            threshold = newCapacity - 1;
+
+        @K@[] ks = keys;
+        Geometry g = geometry;
+        for (int i = oldCapacity; i-- > 0; ) {
+            @K@ k = oldKeys[i];
+            if (k == FREE)
+                continue;
+            int hash = @KBOX@.hashCode(k);
+            int index = g.hash1(hash);
+            int step = g.hash2(hash);
+            while (ks[index] != FREE)
+                index = g.next(index, step);
+            ks[index] = k;
+            values[index] = oldValues[i];
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(keys, FREE);
+        Arrays.fill(values, @NO_VALUE@);
+        Arrays.fill(deleted, 0L);
+        tombstones = 0;
+        count = 0;
+        hasFreeKey = false;
+        freeValue = @NO_VALUE@;
+    }
+
+    public void forEach(@CONSUMER@ action) {
+        Objects.requireNonNull(action);
+        if (hasFreeKey)
+            action.accept(FREE, freeValue);
+        @K@[] ks = keys;
+        for (int i = 0; i < ks.length; i++) {
+            if (ks[i] != FREE)
+                action.accept(ks[i], @CAST@values[i]);
+        }
+    }
+
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        forEach((k, v) -> {
+            if (sb.length() > 1)
+                sb.append(", ");
+            sb.append(k).append('=').append(v);
+        });
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,134 @@
+import HashTable.BoundedHashTable;
+import HashTable.BoundedHashTable.Eviction;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestBoundedHashTable {
+
+    @Test
+    void lruTest() {
+        List<Integer> evicted = new ArrayList<>();
+        BoundedHashTable<Integer, String> currentTable =
+                new BoundedHashTable<>(3, Eviction.LRU, (k, v) -> evicted.add(k));
+        currentTable.put(1, "a");
+        currentTable.put(2, "b");
+        currentTable.put(3, "c");
+        assertEquals("a", currentTable.get(1));
+        currentTable.put(4, "d");
+        assertEquals(Collections.singletonList(2), evicted);
+        currentTable.put(3, "C");
+        currentTable.put(5, "e");
+        assertEquals(Arrays.asList(2, 1), evicted);
+        assertEquals(3, currentTable.size());
+        assertEquals("C", currentTable.get(3));
+        assertEquals(2, currentTable.evictionCount());
+
+        // remove не вызывает слушателя и освобождает место
+        assertEquals("d", currentTable.remove(4));
+        currentTable.put(6, "f");
+        assertEquals(2, evicted.size());
+    }
+
+    @Test
+    void clockTest() {
+        List<Integer> evicted = new ArrayList<>();
+        BoundedHashTable<Integer, Integer> currentTable =
+                new BoundedHashTable<>(4, Eviction.CLOCK, (k, v) -> evicted.add(k));
+        for (int i = 0; i < 4; i++)
+            currentTable.put(i, i);
+        currentTable.get(0);
+        currentTable.get(1);
+        currentTable.put(4, 4);
+        // у 0 и 1 был бит обращения, стрелка прошла их и забрала 2
+        assertEquals(Collections.singletonList(2), evicted);
+        currentTable.put(5, 5);
+        assertEquals(Arrays.asList(2, 3), evicted);
+        currentTable.put(6, 6);
+        assertEquals(Arrays.asList(2, 3, 0), evicted);
+    }
+
+    @Test
+    void tinyLfuTest() {
+        int maximum = 1000;
+        BoundedHashTable<Integer, Integer> lfu = new BoundedHashTable<>(maximum, Eviction.TINY_LFU);
+        BoundedHashTable<Integer, Integer> lru = new BoundedHashTable<>(maximum, Eviction.LRU);
+        // 500 горячих ключей вперемешку с потоком одноразовых: LRU их вымывает, TinyLFU - нет
+        Random random = new Random(21);
+        int cold = 1_000_000;
+        int lfuHits = 0, lruHits = 0;
+        for (int step = 0; step < 50000; step++) {
+            int hot = random.nextInt(500);
+            boolean measure = step >= 25000;
+            if (lfu.get(hot) != null && measure)
+                lfuHits++;
+            else
+                lfu.put(hot, hot);
+            if (lru.get(hot) != null && measure)
+                lruHits++;
+            else
+                lru.put(hot, hot);
+            for (int i = 0; i < 5; i++, cold++) {
+                lfu.computeIfAbsent(cold, k -> k);
+                lru.computeIfAbsent(cold, k -> k);
+            }
+        }
+        assertEquals(maximum, lfu.size());
+        assertTrue(lfuHits > 20000, "TinyLFU hot hits: " + lfuHits);
+        assertTrue(lfuHits > 2 * lruHits, "TinyLFU " + lfuHits + " vs LRU " + lruHits);
+    }
+
+    @Test
+    void randomTest() {
+        for (Eviction eviction : Eviction.values()) {
+            Map<Integer, Integer> evicted = new HashMap<>();
+            BoundedHashTable<Integer, Integer> currentTable =
+                    new BoundedHashTable<>(100, eviction, evicted::put);
+            Map<Integer, Integer> controlTable = new HashMap<>();
+            Random random = new Random(20);
+            for (int i = 0; i < 50000; i++) {
+                int key = random.nextInt(400);
+                switch (random.nextInt(4)) {
+                    case 0:
+                        currentTable.remove(key);
+                        controlTable.remove(key);
+                        break;
+                    case 1:
+                        Integer v = currentTable.get(key);
+                        if (v != null)
+                            assertEquals(controlTable.get(key), v);
+                        break;
+                    default:
+                        currentTable.put(key, i);
+                        controlTable.put(key, i);
+                }
+                // всё вытесненное уходит из контрольной таблицы
+                for (Map.Entry<Integer, Integer> e : evicted.entrySet())
+                    assertEquals(controlTable.remove(e.getKey()), e.getValue(), eviction.toString());
+                evicted.clear();
+                assertTrue(currentTable.size() <= 100);
+                assertEquals(controlTable.size(), currentTable.size(), eviction.toString());
+            }
+            Map<Integer, Integer> copy = new HashMap<>();
+            currentTable.forEach(copy::put);
+            assertEquals(controlTable, copy);
+            currentTable.clear();
+            assertTrue(currentTable.isEmpty());
+            currentTable.put(1, 1);
+            assertEquals(Integer.valueOf(1), currentTable.get(1));
+        }
+    }
+
+    @Test
+    void hugeMaximumTest() {
+        // sketch растёт вместе с кешем, а не размечается под maximumSize
+        BoundedHashTable<Integer, Integer> currentTable =
+                new BoundedHashTable<>(Integer.MAX_VALUE, Eviction.TINY_LFU);
+        for (int i = 0; i < 10000; i++)
+            currentTable.put(i, i);
+        assertEquals(10000, currentTable.size());
+        for (int i = 0; i < 10000; i++)
+            assertEquals(Integer.valueOf(i), currentTable.get(i));
+    }
+}
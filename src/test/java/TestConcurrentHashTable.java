@@ -0,0 +1,64 @@
+import HashTable.ConcurrentHashTable;
+import org.junit.jupiter.api.Test;
+import java.util.*;
+import java.util.concurrent.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestConcurrentHashTable {
+
+    @Test
+    void putGetRemoveTest() {
+        ConcurrentHashTable<Integer, Integer> currentTable = new ConcurrentHashTable<Integer, Integer>();
+        Hashtable<Integer, Integer> controlTable = new Hashtable<>();
+        Random random = new Random(13);
+        for (int i = 0; i < 20000; i++) {
+            int key = random.nextInt(5000) - 2500;
+            assertEquals(controlTable.put(key, i), currentTable.put(key, i));
+            int other = random.nextInt(5000) - 2500;
+            if (i % 2 == 0)
+                assertEquals(controlTable.remove(other), currentTable.remove(other));
+            assertEquals(controlTable.get(other), currentTable.get(other));
+        }
+        assertEquals(controlTable.size(), currentTable.size());
+        assertEquals(controlTable, currentTable);
+        assertEquals(controlTable.putIfAbsent(1, 1), currentTable.putIfAbsent(1, 1));
+    }
+
+    @Test
+    void concurrentMergeTest() throws Exception {
+        ConcurrentHashTable<Integer, Integer> currentTable = new ConcurrentHashTable<Integer, Integer>();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < 20000; i++)
+                    currentTable.merge(i % 1000, 1, Integer::sum);
+            }));
+        }
+        for (Future<?> f : futures)
+            f.get();
+        pool.shutdown();
+        assertEquals(1000, currentTable.size());
+        for (int i = 0; i < 1000; i++)
+            assertEquals(160, currentTable.get(i));
+    }
+
+    @Test
+    void weakIteratorTest() {
+        ConcurrentHashTable<Integer, Integer> currentTable = new ConcurrentHashTable<Integer, Integer>();
+        for (int i = 0; i < 100; i++)
+            currentTable.put(i, i);
+        int seen = 0;
+        for (Map.Entry<Integer, Integer> e : currentTable.entrySet()) {
+            currentTable.put(e.getKey() + 1000, 0);
+            seen++;
+        }
+        assertTrue(seen >= 100);
+        Iterator<Integer> it = currentTable.keySet().iterator();
+        while (it.hasNext()) {
+            if (it.next() >= 1000)
+                it.remove();
+        }
+        assertEquals(100, currentTable.size());
+    }
+}
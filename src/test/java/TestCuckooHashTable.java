@@ -0,0 +1,119 @@
+import HashTable.CuckooHashTable;
+import org.junit.jupiter.api.Test;
+import java.util.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestCuckooHashTable {
+
+    @Test
+    void putGetRemoveTest() {
+        for (int ways : new int[]{1, 2, 4, 8}) {
+            CuckooHashTable<Integer, Integer> currentTable = new CuckooHashTable<Integer, Integer>(11, ways);
+            Hashtable<Integer, Integer> controlTable = new Hashtable<>();
+            Random random = new Random(25);
+            for (int i = 0; i < 40000; i++) {
+                int key = random.nextInt(8000) - 4000;
+                assertEquals(controlTable.put(key, i), currentTable.put(key, i));
+                int other = random.nextInt(8000) - 4000;
+                if (i % 3 == 0)
+                    assertEquals(controlTable.remove(other), currentTable.remove(other));
+                assertEquals(controlTable.get(other), currentTable.get(other));
+            }
+            assertEquals(controlTable.size(), currentTable.size());
+            assertEquals(controlTable, currentTable);
+            assertEquals(currentTable, controlTable);
+        }
+    }
+
+    @Test
+    void highLoadTest() {
+        // 4-путевые корзины держат загрузку около 0.9 без роста
+        CuckooHashTable<String, Integer> currentTable = new CuckooHashTable<String, Integer>(100000);
+        int capacity = currentTable.capacity();
+        for (int i = 0; i < 100000; i++)
+            currentTable.put("key" + i, i);
+        assertEquals(capacity, currentTable.capacity());
+        assertTrue(100000.0 / capacity > 0.7);
+        for (int i = 0; i < 100000; i++)
+            assertEquals(Integer.valueOf(i), currentTable.get("key" + i));
+        assertNull(currentTable.get("key-1"));
+    }
+
+    @Test
+    void collidingHashTest() {
+        // 64 строки с одним hashCode() делят две корзины, остальное - в тайник
+        List<String> keys = new ArrayList<>(Collections.singletonList(""));
+        for (int i = 0; i < 6; i++) {
+            List<String> next = new ArrayList<>();
+            for (String k : keys) {
+                next.add(k + "Aa");
+                next.add(k + "BB");
+            }
+            keys = next;
+        }
+        CuckooHashTable<String, Integer> currentTable = new CuckooHashTable<String, Integer>();
+        for (int i = 0; i < keys.size(); i++)
+            currentTable.put(keys.get(i), i);
+        for (int i = 0; i < 1000; i++)
+            currentTable.put("other" + i, -i);
+        assertEquals(keys.size() + 1000, currentTable.size());
+        assertTrue(currentTable.stashSize() > 0);
+        for (int i = 0; i < keys.size(); i++)
+            assertEquals(Integer.valueOf(i), currentTable.get(keys.get(i)));
+
+        // обход с удалением проходит и по тайнику
+        Set<String> seen = new HashSet<>();
+        Iterator<Map.Entry<String, Integer>> it = currentTable.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Integer> e = it.next();
+            assertTrue(seen.add(e.getKey()));
+            if (e.getValue() % 2 == 0)
+                it.remove();
+        }
+        assertEquals(keys.size() + 1000, seen.size());
+        for (int i = 0; i < keys.size(); i++)
+            assertEquals(i % 2 == 0 ? null : Integer.valueOf(i), currentTable.get(keys.get(i)));
+        Map<String, Integer> copy = new HashMap<>();
+        currentTable.forEach(copy::put);
+        assertEquals(copy, currentTable);
+    }
+
+    @Test
+    void unboundedCollisionTest() {
+        // 4096 строк с одним hashCode(): ни таблица, ни тайник от них не растут
+        List<String> keys = new ArrayList<>(Collections.singletonList(""));
+        for (int i = 0; i < 12; i++) {
+            List<String> next = new ArrayList<>();
+            for (String k : keys) {
+                next.add(k + "Aa");
+                next.add(k + "BB");
+            }
+            keys = next;
+        }
+        CuckooHashTable<String, Integer> currentTable = new CuckooHashTable<String, Integer>();
+        int capacity = currentTable.capacity();
+        for (int i = 0; i < keys.size(); i++)
+            currentTable.put(keys.get(i), i);
+        assertEquals(capacity, currentTable.capacity());
+        assertTrue(currentTable.stashSize() <= 4);
+        // в таблице - только две корзины по 4 ячейки
+        assertEquals(keys.size() - 2 * 4 - currentTable.stashSize(), currentTable.collisionSize());
+        assertEquals(keys.size(), currentTable.size());
+        for (int i = 0; i < keys.size(); i++)
+            assertEquals(Integer.valueOf(i), currentTable.get(keys.get(i)));
+
+        // обычные ключи растят таблицу как обычно, collisions переезжают целиком
+        for (int i = 0; i < 10000; i++)
+            currentTable.put("other" + i, -i);
+        assertTrue(currentTable.capacity() < 4 * 10000);
+        assertEquals(keys.size() + 10000, currentTable.size());
+        for (int i = 0; i < keys.size(); i += 2)
+            assertEquals(Integer.valueOf(i), currentTable.remove(keys.get(i)));
+        for (int i = 0; i < keys.size(); i++)
+            assertEquals(i % 2 == 0 ? null : Integer.valueOf(i), currentTable.get(keys.get(i)));
+        Map<String, Integer> copy = new HashMap<>();
+        currentTable.forEach(copy::put);
+        assertEquals(keys.size() / 2 + 10000, copy.size());
+        assertEquals(copy, currentTable);
+    }
+}
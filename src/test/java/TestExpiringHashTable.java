@@ -0,0 +1,93 @@
+import HashTable.ExpiringHashTable;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestExpiringHashTable {
+
+    @Test
+    void lazyExpiryTest() {
+        AtomicLong clock = new AtomicLong(1_000_000_000L);
+        ExpiringHashTable<String, String> currentTable =
+                new ExpiringHashTable<>(10, TimeUnit.SECONDS, clock::get);
+        currentTable.put("a", "1");
+        currentTable.put("b", "2", 1, TimeUnit.MINUTES);
+        currentTable.put("c", "3", 0, TimeUnit.SECONDS);
+        assertEquals(Long.valueOf(10), currentTable.getTtl("a", TimeUnit.SECONDS));
+        assertEquals(Long.valueOf(-1), currentTable.getTtl("c", TimeUnit.SECONDS));
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(9));
+        assertEquals("1", currentTable.get("a"));
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertNull(currentTable.get("a"));
+        assertFalse(currentTable.containsKey("a"));
+        assertEquals("2", currentTable.get("b"));
+
+        // put продлевает срок, а значение истёкшей записи не возвращает
+        currentTable.put("b", "22", 5, TimeUnit.SECONDS);
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(4));
+        assertEquals("22", currentTable.get("b"));
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertNull(currentTable.put("b", "b", 1, TimeUnit.SECONDS));
+        assertEquals("b", currentTable.remove("b"));
+
+        clock.addAndGet(TimeUnit.DAYS.toNanos(365 * 5));
+        assertEquals("3", currentTable.get("c"));
+        Map<String, String> copy = new HashMap<>();
+        currentTable.forEach(copy::put);
+        assertEquals(Collections.singletonMap("c", "3"), copy);
+    }
+
+    @Test
+    void wheelTest() {
+        AtomicLong clock = new AtomicLong(-123_456_789L);
+        ExpiringHashTable<Integer, Integer> currentTable =
+                new ExpiringHashTable<>(0, TimeUnit.SECONDS, clock::get);
+        Random random = new Random(21);
+        Map<Integer, Long> deadlines = new HashMap<>();
+        long[] ttls = {TimeUnit.MILLISECONDS.toNanos(3), TimeUnit.SECONDS.toNanos(2),
+                TimeUnit.MINUTES.toNanos(7), TimeUnit.HOURS.toNanos(30)};
+        for (int i = 0; i < 20000; i++) {
+            long ttl = ttls[random.nextInt(ttls.length)] + random.nextInt(1_000_000);
+            currentTable.put(i, i, ttl, TimeUnit.NANOSECONDS);
+            deadlines.put(i, clock.get() + ttl);
+            clock.addAndGet(random.nextInt(100_000));
+        }
+        // без обращений к ключам колесо само убирает записи, и только истёкшие
+        for (int round = 0; round < 200_000 && !currentTable.isEmpty(); round++) {
+            clock.addAndGet(random.nextInt(2) == 0 ? random.nextInt(5_000_000)
+                    : (long) random.nextInt(120_000) * 1_000_000);
+            currentTable.cleanUp();
+            long now = clock.get();
+            long live = deadlines.values().stream().filter(d -> d - now > 0).count();
+            // cleanUp убрал ровно просроченное
+            assertEquals(live, currentTable.size(), "round " + round);
+            if (round % 100 == 0) {
+                for (Map.Entry<Integer, Long> e : deadlines.entrySet())
+                    assertEquals(e.getValue() - now > 0, currentTable.get(e.getKey()) != null);
+            }
+        }
+        assertTrue(currentTable.isEmpty());
+    }
+
+    @Test
+    void sliceTest() {
+        AtomicLong clock = new AtomicLong();
+        ExpiringHashTable<Integer, Integer> currentTable =
+                new ExpiringHashTable<>(1, TimeUnit.SECONDS, clock::get);
+        for (int i = 0; i < 1000; i++)
+            currentTable.put(i, i);
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        // одна операция убирает лишь небольшую порцию
+        assertNull(currentTable.get(-1));
+        assertTrue(currentTable.size() >= 1000 - 16);
+        assertTrue(currentTable.size() < 1000);
+        for (int i = 0; i < 100; i++)
+            currentTable.get(-1);
+        assertEquals(0, currentTable.size());
+        assertNull(currentTable.get(5));
+    }
+}
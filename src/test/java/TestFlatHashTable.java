@@ -0,0 +1,78 @@
+import HashTable.FlatHashTable;
+import org.junit.jupiter.api.Test;
+import java.util.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestFlatHashTable {
+
+    @Test
+    void putGetRemoveTest() {
+        FlatHashTable<Integer, Integer> currentTable = new FlatHashTable<Integer, Integer>();
+        Hashtable<Integer, Integer> controlTable = new Hashtable<>();
+        Random random = new Random(3);
+        for (int i = 0; i < 20000; i++) {
+            int key = random.nextInt(5000) - 2500;
+            assertEquals(controlTable.put(key, i), currentTable.put(key, i));
+            int other = random.nextInt(5000) - 2500;
+            if (i % 2 == 0)
+                assertEquals(controlTable.remove(other), currentTable.remove(other));
+            assertEquals(controlTable.get(other), currentTable.get(other));
+        }
+        assertEquals(controlTable.size(), currentTable.size());
+        assertEquals(controlTable, currentTable);
+    }
+
+    @Test
+    void iteratorRemoveTest() {
+        FlatHashTable<Integer, Integer> currentTable = new FlatHashTable<Integer, Integer>(16);
+        for (int i = 0; i < 12; i++)
+            currentTable.put(i * 16, i);
+        Set<Integer> seen = new HashSet<>();
+        Iterator<Map.Entry<Integer, Integer>> it = currentTable.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, Integer> e = it.next();
+            assertTrue(seen.add(e.getKey()));
+            if (e.getValue() % 2 == 0)
+                it.remove();
+        }
+        assertEquals(12, seen.size());
+        assertEquals(6, currentTable.size());
+        for (int i = 0; i < 12; i++)
+            assertEquals(i % 2 == 0 ? null : i, currentTable.get(i * 16));
+    }
+
+    @Test
+    void entrySetValueTest() {
+        FlatHashTable<Integer, String> currentTable = new FlatHashTable<Integer, String>();
+        currentTable.put(1, "one");
+        currentTable.entrySet().iterator().next().setValue("uno");
+        assertEquals("uno", currentTable.get(1));
+        assertThrows(NullPointerException.class, () -> currentTable.put(2, null));
+    }
+
+    @Test
+    void robinHoodTest() {
+        FlatHashTable<Integer, Integer> currentTable = new FlatHashTable<Integer, Integer>(11, 0.95f, true);
+        assertTrue(currentTable.isRobinHood());
+        Hashtable<Integer, Integer> controlTable = new Hashtable<>();
+        Random random = new Random(23);
+        for (int i = 0; i < 50000; i++) {
+            // ключи с общими младшими битами дают длинные кластеры
+            int key = random.nextInt(8000) * 64;
+            assertEquals(controlTable.put(key, i), currentTable.put(key, i));
+            int other = random.nextInt(8000) * 64;
+            if (i % 3 == 0)
+                assertEquals(controlTable.remove(other), currentTable.remove(other));
+            assertEquals(controlTable.get(other), currentTable.get(other));
+        }
+        assertEquals(controlTable, currentTable);
+
+        Iterator<Integer> it = currentTable.keySet().iterator();
+        while (it.hasNext()) {
+            if (it.next() % 128 == 0)
+                it.remove();
+        }
+        controlTable.keySet().removeIf(k -> k % 128 == 0);
+        assertEquals(controlTable, currentTable);
+    }
+}
@@ -0,0 +1,80 @@
+import HashTable.FrozenHashTable;
+import HashTable.HashStrategy;
+import HashTable.HashTable;
+import HashTable.HashTableSnapshot;
+import HashTable.SizingPolicy;
+import org.junit.jupiter.api.Test;
+import java.util.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestFrozenHashTable {
+
+    @Test
+    void copyOfTest() {
+        HashTable<Integer, Integer> currentTable = new HashTable<Integer, Integer>();
+        Random random = new Random(17);
+        for (int i = 0; i < 20000; i++)
+            currentTable.put(random.nextInt(), i);
+        FrozenHashTable<Integer, Integer> frozen = currentTable.freeze();
+        assertEquals(currentTable.size(), frozen.size());
+        for (Map.Entry<Integer, Integer> e : currentTable.entrySet())
+            assertEquals(e.getValue(), frozen.get(e.getKey()));
+        assertNull(frozen.get(0.5));
+        assertEquals(new HashMap<>(currentTable), frozen);
+        assertEquals(frozen, new HashMap<>(currentTable));
+        assertThrows(UnsupportedOperationException.class, () -> frozen.put(1, 1));
+        assertThrows(UnsupportedOperationException.class, () -> frozen.entrySet().iterator().next().setValue(1));
+    }
+
+    @Test
+    void collidingHashesTest() {
+        Map<String, Integer> source = new HashMap<>();
+        // "Aa" и "BB" дают одинаковый hashCode
+        source.put("AaAa", 1);
+        source.put("AaBB", 2);
+        source.put("BBAa", 3);
+        source.put("BBBB", 4);
+        source.put("other", 5);
+        FrozenHashTable<String, Integer> frozen = HashTable.copyOf(source);
+        assertEquals(source, frozen);
+        assertEquals(5, frozen.size());
+        assertEquals(3, frozen.get("BBAa"));
+        assertTrue(frozen.containsKey("BBBB"));
+        assertEquals(0, HashTable.copyOf(Collections.emptyMap()).size());
+    }
+
+    @Test
+    void strategyTest() {
+        HashTable<String, Integer> ignoreCase = new HashTable<String, Integer>(11, 0.75f, SizingPolicy.PRIME,
+                HashStrategy.<String>of(k -> k.toLowerCase().hashCode(), String::equalsIgnoreCase));
+        for (int i = 0; i < 1000; i++)
+            ignoreCase.put("Header-" + i, i);
+        FrozenHashTable<String, Integer> frozen = ignoreCase.freeze();
+        // что находила исходная таблица, находит и снимок
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, frozen.get("HEADER-" + i));
+            assertTrue(frozen.containsKey("header-" + i));
+        }
+        assertNull(frozen.get("header-1000"));
+        assertSame(frozen, FrozenHashTable.copyOf(frozen, ignoreCase.strategy()));
+
+        // и дополнительная таблица для одинаковых хешей сравнивает той же стратегией
+        Map<String, Integer> source = new HashMap<>();
+        source.put("AaAa", 1);
+        source.put("BBBB", 2);
+        FrozenHashTable<String, Integer> colliding = FrozenHashTable.copyOf(source,
+                HashStrategy.<String>of(String::length, String::equalsIgnoreCase));
+        assertEquals(1, colliding.get("aaaa"));
+        assertEquals(2, colliding.get("bbbb"));
+    }
+
+    @Test
+    void publishTest() {
+        HashTableSnapshot<String, Integer> snapshot = new HashTableSnapshot<>(Collections.singletonMap("a", 1));
+        FrozenHashTable<String, Integer> first = snapshot.get();
+        assertSame(first, snapshot.publish(Collections.singletonMap("b", 2)));
+        assertEquals(1, first.get("a"));
+        assertNull(snapshot.get().get("a"));
+        assertEquals(2, snapshot.get().get("b"));
+    }
+}
@@ -1,5 +1,16 @@
+import HashTable.Codec;
+import HashTable.Geometry;
+import HashTable.HashStrategy;
 import HashTable.HashTable;
+import HashTable.SizingPolicy;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -189,4 +200,441 @@ public class TestHashTable {
         }));
         assertEquals("val 71", current.compute(7, (k, v) -> (v == null) ? String.valueOf(1) : v+1));
     }
-}
\ No newline at end of file
+
+    @Test
+    void geometryTest() {
+        HashTable<Integer, Integer> currentTable = new HashTable<Integer, Integer>();
+        assertEquals(11, currentTable.geometry().capacity());
+        assertEquals(7, currentTable.geometry().prime());
+        assertEquals(97, new HashTable<Integer, Integer>(100).geometry().prime());
+    }
+
+    @Test
+    void rehashTest() {
+        for (SizingPolicy sizing : Arrays.asList(SizingPolicy.PRIME, SizingPolicy.POWER_OF_TWO)) {
+            HashTable<Integer, Integer> currentTable = new HashTable<Integer, Integer>(11, 0.75f, sizing);
+            Hashtable<Integer, Integer> controlTable = new Hashtable<>();
+            Random random = new Random(42);
+            for (int i = 0; i < 20000; i++) {
+                int key = random.nextInt() % 50000;
+                currentTable.put(key, i);
+                controlTable.put(key, i);
+                if (i % 3 == 0) {
+                    int removed = random.nextInt() % 50000;
+                    assertEquals(controlTable.remove(removed), currentTable.remove(removed));
+                }
+            }
+            assertEquals(controlTable.size(), currentTable.size());
+            assertEquals(controlTable, currentTable);
+            assertTrue(currentTable.geometry().capacity() > controlTable.size());
+            assertEquals(sizing == SizingPolicy.POWER_OF_TWO, currentTable.geometry().isPowerOfTwo());
+        }
+    }
+
+    @Test
+    void incrementalRehashTest() {
+        HashTable<Integer, Integer> currentTable = new HashTable<Integer, Integer>();
+        currentTable.setIncrementalRehash(2);
+        Hashtable<Integer, Integer> controlTable = new Hashtable<>();
+        Random random = new Random(7);
+        boolean rehashing = false;
+        for (int i = 0; i < 5000; i++) {
+            int key = random.nextInt(3000);
+            assertEquals(controlTable.put(key, i), currentTable.put(key, i));
+            rehashing |= currentTable.isRehashing();
+            int other = random.nextInt(3000);
+            assertEquals(controlTable.get(other), currentTable.get(other));
+            if (i % 4 == 0)
+                assertEquals(controlTable.remove(other), currentTable.remove(other));
+        }
+        assertTrue(rehashing);
+        assertEquals(controlTable.size(), currentTable.size());
+        assertEquals(controlTable, currentTable);
+        assertEquals(controlTable.keySet(), currentTable.keySet());
+        assertFalse(currentTable.isRehashing());
+    }
+
+    @Test
+    void computeWhileRehashingTest() {
+        // "Aa" и "BB" с одним hashCode(): get("Aa") внутри функции переносит его
+        // из старой таблицы ровно в ячейку, найденную для "BB"
+        for (int op = 0; op < 2; op++) {
+            for (int n = 0; n < 50; n++) {
+                HashTable<String, String> currentTable = new HashTable<String, String>();
+                currentTable.setIncrementalRehash(1);
+                currentTable.put("Aa", "A");
+                for (int i = 0; i < n || !currentTable.isRehashing(); i++)
+                    currentTable.put("key" + i, "v");
+                int size = currentTable.size();
+                if (op == 0) {
+                    assertEquals("B", currentTable.computeIfAbsent("BB", k -> {
+                        assertEquals("A", currentTable.get("Aa"));
+                        return "B";
+                    }));
+                } else {
+                    assertEquals("B", currentTable.compute("BB", (k, v) -> {
+                        assertTrue(currentTable.containsKey("Aa"));
+                        return "B";
+                    }));
+                }
+                assertEquals(size + 1, currentTable.size());
+                assertEquals("A", currentTable.get("Aa"));
+                assertEquals("B", currentTable.get("BB"));
+            }
+        }
+    }
+
+    @Test
+    void hashStrategyTest() {
+        for (HashStrategy<Object> strategy : Arrays.asList(HashStrategy.HASH_CODE, HashStrategy.MURMUR3,
+                HashStrategy.XXHASH, HashStrategy.FIBONACCI)) {
+            HashTable<Integer, Integer> currentTable =
+                    new HashTable<Integer, Integer>(11, 0.75f, SizingPolicy.POWER_OF_TWO, strategy);
+            Hashtable<Integer, Integer> controlTable = new Hashtable<>();
+            for (int i = 0; i < 5000; i++) {
+                currentTable.put(i << 16, i);
+                controlTable.put(i << 16, i);
+                if (i % 5 == 0)
+                    assertEquals(controlTable.remove(i << 15), currentTable.remove(i << 15));
+            }
+            assertEquals(controlTable, currentTable);
+            assertEquals(controlTable.hashCode(), currentTable.hashCode());
+            assertSame(strategy, currentTable.strategy());
+        }
+
+        HashTable<String, Integer> ignoreCase = new HashTable<String, Integer>(11, 0.75f, SizingPolicy.PRIME,
+                HashStrategy.<String>of(k -> k.toLowerCase().hashCode(), String::equalsIgnoreCase));
+        ignoreCase.put("Content-Type", 1);
+        assertEquals(1, ignoreCase.get("content-type"));
+        assertEquals(1, ignoreCase.put("CONTENT-TYPE", 2));
+        assertEquals(1, ignoreCase.size());
+        assertEquals(2, ignoreCase.remove("content-TYPE"));
+        assertTrue(ignoreCase.isEmpty());
+    }
+
+    // 2^12 строк из "Aa" и "BB" с одним и тем же hashCode()
+    private static List<String> collidingStrings() {
+        List<String> keys = new ArrayList<>();
+        for (int mask = 0; mask < 1 << 12; mask++) {
+            StringBuilder sb = new StringBuilder();
+            for (int bit = 0; bit < 12; bit++)
+                sb.append((mask & (1 << bit)) != 0 ? "Aa" : "BB");
+            keys.add(sb.toString());
+        }
+        return keys;
+    }
+
+    @Test
+    void floodingTest() {
+        List<String> keys = collidingStrings();
+        HashTable<String, Integer> currentTable = new HashTable<String, Integer>();
+        Hashtable<String, Integer> controlTable = new Hashtable<>();
+        for (int i = 0; i < keys.size(); i++) {
+            currentTable.put(keys.get(i), i);
+            controlTable.put(keys.get(i), i);
+        }
+        assertTrue(currentTable.overflowSize() > 0);
+        assertEquals(controlTable, currentTable);
+        assertEquals(controlTable.hashCode(), currentTable.hashCode());
+        assertEquals(controlTable.keySet(), currentTable.keySet());
+
+        for (int i = 0; i + 1 < keys.size(); i += 3) {
+            assertEquals(controlTable.remove(keys.get(i)), currentTable.remove(keys.get(i)));
+            assertEquals(controlTable.merge(keys.get(i + 1), 1, Integer::sum),
+                    currentTable.merge(keys.get(i + 1), 1, Integer::sum));
+        }
+        for (Iterator<String> it = currentTable.keySet().iterator(); it.hasNext(); ) {
+            String key = it.next();
+            if (key.startsWith("Aa")) {
+                it.remove();
+                controlTable.remove(key);
+            }
+        }
+        assertEquals(controlTable, currentTable);
+        assertNull(currentTable.get("AaAa"));
+
+        HashTable<String, Integer> seeded = new HashTable<String, Integer>(11, 0.75f,
+                SizingPolicy.PRIME, HashStrategy.sipHash());
+        for (int i = 0; i < keys.size(); i++)
+            seeded.put(keys.get(i), i);
+        assertEquals(0, seeded.overflowSize());
+        for (int i = 0; i < keys.size(); i++)
+            assertEquals(i, seeded.get(keys.get(i)));
+        assertNotEquals(HashStrategy.sipHash(1, 2).hash("key"), HashStrategy.sipHash(3, 4).hash("key"));
+        assertEquals(HashStrategy.sipHash(1, 2).hash("key"), HashStrategy.sipHash(1, 2).hash("key"));
+    }
+
+    // политика, у которой расти некуда: ёмкость всегда 11
+    static final SizingPolicy FIXED = new SizingPolicy() {
+        public int capacityFor(int requested) {
+            return 11;
+        }
+
+        public int grow(int capacity) {
+            return capacity;
+        }
+
+        public Geometry geometry(int capacity) {
+            return SizingPolicy.PRIME.geometry(capacity);
+        }
+    };
+
+    @Test
+    void fullTableTest() {
+        HashTable<Integer, Integer> currentTable = new HashTable<Integer, Integer>(11, 0.75f, FIXED);
+        int i = 0;
+        while (true) {
+            try {
+                currentTable.put(i, i);
+            } catch (IllegalStateException e) {
+                break;
+            }
+            i++;
+        }
+        // одна ячейка остаётся пустой, и промах её находит
+        assertEquals(10, currentTable.size());
+        assertNull(currentTable.get(-1));
+        assertFalse(currentTable.containsKey(-1));
+        assertNull(currentTable.remove(-1));
+        assertEquals(Integer.valueOf(3), currentTable.put(3, 33));
+        assertEquals(Integer.valueOf(33), currentTable.remove(3));
+        assertNull(currentTable.put(100, 100));
+        assertThrows(IllegalStateException.class, () -> currentTable.put(101, 101));
+        assertEquals(10, currentTable.size());
+    }
+
+    // равны по compareTo только через weight, по equals - по id
+    private static final class Weighted implements Comparable<Weighted> {
+        final int id;
+        final int weight;
+
+        Weighted(int id, int weight) {
+            this.id = id;
+            this.weight = weight;
+        }
+
+        @Override
+        public int compareTo(Weighted o) {
+            return Integer.compare(weight, o.weight);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Weighted && ((Weighted) o).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return 42;
+        }
+    }
+
+    // Comparable не своего класса: compareTo на двух таких ключах бросил бы ClassCastException
+    private static final class Foreign implements Comparable<String> {
+        final int id;
+
+        Foreign(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(String o) {
+            return 0;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Foreign && ((Foreign) o).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return 42;
+        }
+    }
+
+    @Test
+    void overflowEqualityTest() {
+        // у BigDecimal 1.0 и 1.00 равны по compareTo, но не по equals
+        BigDecimal one = new BigDecimal("1.0");
+        BigDecimal oneHundredths = new BigDecimal("1.00");
+        HashTable<BigDecimal, Integer> currentTable = new HashTable<>();
+        HashMap<BigDecimal, Integer> controlTable = new HashMap<>();
+        for (long hi = 1; hi <= 200; hi++) {
+            // тот же hashCode, что у 1.0
+            BigDecimal key = BigDecimal.valueOf(hi << 32 | ((10 - 31 * hi) & 0xFFFFFFFFL), 1);
+            assertEquals(one.hashCode(), key.hashCode());
+            currentTable.put(key, (int) hi);
+            controlTable.put(key, (int) hi);
+        }
+        currentTable.put(one, -1);
+        controlTable.put(one, -1);
+        assertTrue(currentTable.overflowSize() > 0);
+        assertNull(currentTable.get(oneHundredths));
+        assertFalse(currentTable.containsKey(oneHundredths));
+        assertNull(currentTable.put(oneHundredths, 7));
+        controlTable.put(oneHundredths, 7);
+        assertEquals(Integer.valueOf(-1), currentTable.get(one));
+        assertEquals(Integer.valueOf(7), currentTable.get(oneHundredths));
+        assertEquals(controlTable, currentTable);
+
+        // равные по compareTo ключи с одним хешем лежат в дереве рядом и различаются equals
+        HashTable<Weighted, Integer> weighted = new HashTable<>();
+        for (int i = 0; i < 200; i++)
+            weighted.put(new Weighted(i, i % 3), i);
+        assertTrue(weighted.overflowSize() > 0);
+        for (int i = 0; i < 200; i++)
+            assertEquals(Integer.valueOf(i), weighted.get(new Weighted(i, i % 3)));
+        assertNull(weighted.get(new Weighted(200, 1)));
+        for (int i = 0; i < 200; i += 2)
+            assertEquals(Integer.valueOf(i), weighted.remove(new Weighted(i, i % 3)));
+        assertEquals(100, weighted.size());
+        int sum = 0;
+        for (Map.Entry<Weighted, Integer> e : weighted.entrySet()) {
+            assertEquals(1, e.getKey().id % 2);
+            sum += e.getValue();
+        }
+        assertEquals(100 * 100, sum);
+
+        // такие ключи в дерево не идут, а остаются в цепочке
+        HashTable<Foreign, Integer> foreign = new HashTable<>();
+        for (int i = 0; i < 200; i++)
+            assertNull(foreign.put(new Foreign(i), i));
+        assertEquals(0, foreign.overflowSize());
+        for (int i = 0; i < 200; i++)
+            assertEquals(Integer.valueOf(i), foreign.get(new Foreign(i)));
+    }
+
+    @Test
+    void batchTest() {
+        HashTable<Integer, Integer> currentTable = new HashTable<Integer, Integer>();
+        currentTable.put(-1, -1);
+        Map<Integer, Integer> source = new HashMap<>();
+        for (int i = 0; i < 20000; i++)
+            source.put(i * 7, i);
+        currentTable.putAll(source);
+        assertEquals(20001, currentTable.size());
+        source.put(-1, -1);
+        assertEquals(source, currentTable);
+
+        Integer[] keys = new Integer[100];
+        for (int i = 0; i < keys.length; i++)
+            keys[i] = i;
+        Integer[] out = new Integer[keys.length];
+        assertEquals(15, currentTable.getAll(keys, out));
+        for (int i = 0; i < keys.length; i++)
+            assertEquals(source.get(i), out[i]);
+        assertThrows(IllegalArgumentException.class, () -> currentTable.getAll(keys, new Integer[1]));
+
+        assertTrue(currentTable.containsAll(new Integer[]{0, 7, 14, -1}));
+        assertFalse(currentTable.containsAll(new Integer[]{0, 7, 15}));
+
+        List<Integer> removed = new ArrayList<>();
+        for (int i = 0; i < 1000; i++)
+            removed.add(i);
+        removed.add(0); // повтор не удаляется второй раз
+        assertEquals(143, currentTable.removeAll(removed));
+        source.keySet().removeAll(removed);
+        assertEquals(source, currentTable);
+        currentTable.putAll(source);
+        assertEquals(source, currentTable);
+    }
+
+    @Test
+    void parallelBulkTest() {
+        HashTable<Integer, Long> currentTable = new HashTable<Integer, Long>();
+        long expected = 0;
+        for (int i = 0; i < 200000; i++) {
+            currentTable.put(i, (long) i);
+            expected += i;
+        }
+        for (long threshold : new long[]{1, Long.MAX_VALUE}) {
+            assertEquals(Long.valueOf(expected), currentTable.reduceValues(threshold, Long::sum));
+            assertEquals(Integer.valueOf(199999), currentTable.reduceKeys(threshold, Math::max));
+            Integer found = currentTable.search(threshold, (k, v) -> v == 123456 ? k : null);
+            assertEquals(Integer.valueOf(123456), found);
+            assertNull(currentTable.search(threshold, (k, v) -> v < 0 ? k : null));
+
+            java.util.concurrent.atomic.LongAdder sum = new java.util.concurrent.atomic.LongAdder();
+            currentTable.forEach(threshold, (k, v) -> sum.add(v));
+            assertEquals(expected, sum.sum());
+        }
+        currentTable.replaceAll(1, (k, v) -> v * 2);
+        assertEquals(Long.valueOf(2 * expected), currentTable.reduceValues(1, Long::sum));
+        assertThrows(ConcurrentModificationException.class,
+                () -> currentTable.forEach(Long.MAX_VALUE, (k, v) -> currentTable.remove(k)));
+        assertNull(new HashTable<Integer, Long>().reduceValues(1, Long::sum));
+    }
+
+    @Test
+    void spliteratorTest() {
+        HashTable<Integer, Integer> currentTable = new HashTable<Integer, Integer>();
+        for (int i = 0; i < 100000; i++)
+            currentTable.put(i, i % 10);
+
+        Spliterator<Integer> keys = currentTable.keySet().spliterator();
+        assertTrue(keys.hasCharacteristics(Spliterator.SIZED | Spliterator.DISTINCT | Spliterator.NONNULL));
+        assertEquals(100000, keys.getExactSizeIfKnown());
+        assertFalse(currentTable.values().spliterator().hasCharacteristics(Spliterator.DISTINCT));
+        Spliterator<Integer> half = keys.trySplit();
+        assertNotNull(half);
+        assertEquals(-1, keys.getExactSizeIfKnown());
+
+        assertEquals(100000, currentTable.keySet().parallelStream().distinct().count());
+        assertEquals(4999950000L, currentTable.keySet().parallelStream().mapToLong(Integer::longValue).sum());
+        assertEquals(450000, currentTable.values().parallelStream().mapToInt(Integer::intValue).sum());
+        assertEquals(100000, currentTable.entrySet().parallelStream()
+                .filter(e -> e.getKey() % 10 == e.getValue()).count());
+
+        Spliterator<Integer> values = currentTable.values().spliterator();
+        assertThrows(ConcurrentModificationException.class, () -> values.forEachRemaining(v -> currentTable.put(-1, v)));
+    }
+
+    private static HashTable<String, String> reload(HashTable<String, String> table, Path file,
+                                                    HashStrategy<Object> strategy) throws IOException {
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            table.writeTo(out, Codec.STRING, Codec.STRING);
+        }
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            return HashTable.readFrom(in, Codec.STRING, Codec.STRING, strategy);
+        }
+    }
+
+    @Test
+    void snapshotTest(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("table.bin");
+        HashTable<String, String> currentTable = new HashTable<String, String>();
+        for (int i = 0; i < 50000; i++)
+            currentTable.put("key" + i, "value" + i);
+        for (int i = 0; i < 50000; i += 7)
+            currentTable.remove("key" + i);
+        for (String key : collidingStrings())
+            currentTable.put(key, key.toLowerCase());
+        char[] big = new char[3 << 20];
+        Arrays.fill(big, 'x');
+        currentTable.put("big", new String(big));
+        assertTrue(currentTable.overflowSize() > 0);
+
+        HashTable<String, String> loaded = reload(currentTable, file, HashStrategy.HASH_CODE);
+        assertEquals(currentTable, loaded);
+        assertEquals(currentTable.geometry().capacity(), loaded.geometry().capacity());
+        assertEquals(currentTable.overflowSize(), loaded.overflowSize());
+        for (int i = 0; i < 50000; i++)
+            assertEquals(i % 7 == 0 ? null : "value" + i, loaded.get("key" + i));
+        loaded.put("new", "entry");
+        assertEquals("entry", loaded.get("new"));
+
+        // другой хеш - ячейки не подходят, таблица собирается через put()
+        assertEquals(currentTable, reload(currentTable, file, HashStrategy.sipHash()));
+        assertEquals(new HashTable<String, String>(),
+                reload(new HashTable<String, String>(), file, HashStrategy.HASH_CODE));
+
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.write(java.nio.ByteBuffer.wrap(new byte[64]));
+        }
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            assertThrows(IOException.class, () -> HashTable.readFrom(in, Codec.STRING, Codec.STRING));
+        }
+    }
+}
@@ -0,0 +1,95 @@
+import HashTable.HashTable;
+import HashTable.HashTableStats;
+import HashTable.HashTableStats.Operation;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestHashTableStats {
+
+    @Test
+    void disabledTest() {
+        HashTable<Integer, Integer> currentTable = new HashTable<Integer, Integer>();
+        for (int i = 0; i < 100; i++)
+            currentTable.put(i, i);
+        currentTable.get(5);
+        HashTableStats stats = currentTable.stats();
+        assertFalse(currentTable.isStatsEnabled());
+        assertEquals(100, stats.size());
+        assertEquals(currentTable.geometry().capacity(), stats.capacity());
+        assertEquals(0, stats.operations(Operation.GET));
+        assertEquals(0, stats.rehashes());
+        assertEquals(stats.capacity() - 100, stats.emptySlots());
+    }
+
+    @Test
+    void countersTest() {
+        HashTable<Integer, Integer> currentTable = new HashTable<Integer, Integer>();
+        currentTable.setStatsEnabled(true);
+        for (int i = 0; i < 1000; i++)
+            currentTable.put(i, i);
+        for (int i = 0; i < 1500; i++)
+            currentTable.get(i);
+        for (int i = 0; i < 1000; i += 2)
+            currentTable.remove(i);
+
+        HashTableStats stats = currentTable.stats();
+        assertEquals(1000, stats.hits());
+        assertEquals(500, stats.misses());
+        assertEquals(1000.0 / 1500, stats.hitRatio(), 1e-9);
+        assertEquals(1500, stats.operations(Operation.GET));
+        assertEquals(1000, stats.operations(Operation.PUT));
+        assertEquals(500, stats.operations(Operation.REMOVE));
+        assertTrue(stats.meanProbes(Operation.GET) >= 1);
+        assertTrue(stats.rehashes() > 0);
+        assertTrue(stats.rehashNanos() > 0);
+        assertEquals(500, stats.tombstones());
+        assertEquals(500, stats.size());
+        assertEquals(stats.capacity(), stats.size() + stats.tombstones() + stats.emptySlots());
+        assertEquals(500.0 / stats.capacity(), stats.loadFactor(), 1e-9);
+
+        long[] histogram = stats.probeHistogram(Operation.GET);
+        assertEquals(HashTableStats.BUCKETS, histogram.length);
+        histogram[0] = -1;
+        assertNotEquals(-1, stats.probeHistogram(Operation.GET)[0]);
+
+        currentTable.setStatsEnabled(false);
+        currentTable.setStatsEnabled(true);
+        assertEquals(0, currentTable.stats().hits());
+    }
+
+    @Test
+    void mbeanTest() throws Exception {
+        HashTable<String, Integer> currentTable = new HashTable<String, Integer>();
+        currentTable.setStatsEnabled(true);
+        ObjectName name = HashTableStats.register(currentTable, "test");
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            currentTable.put("a", 1);
+            currentTable.get("a");
+            currentTable.get("b");
+            assertEquals(1, server.getAttribute(name, "Size"));
+            assertEquals(0.5, (Double) server.getAttribute(name, "HitRatio"), 1e-9);
+            assertEquals(2L, ((long[]) server.getAttribute(name, "GetProbeHistogram"))[0]
+                    + ((long[]) server.getAttribute(name, "GetProbeHistogram"))[1]);
+            assertEquals(true, server.getAttribute(name, "StatsEnabled"));
+
+            // чтение атрибутов и снимка не доводит перенос до конца
+            currentTable.setIncrementalRehash(1);
+            for (int i = 0; !currentTable.isRehashing(); i++)
+                currentTable.put("k" + i, i);
+            int size = currentTable.size();
+            assertEquals(size, server.getAttribute(name, "Size"));
+            assertEquals(currentTable.geometry().capacity(), server.getAttribute(name, "Capacity"));
+            assertTrue((Double) server.getAttribute(name, "LoadFactor") > 0);
+            assertEquals(size, currentTable.stats().size());
+            assertTrue(currentTable.isRehashing());
+        } finally {
+            HashTableStats.unregister(name);
+        }
+    }
+}
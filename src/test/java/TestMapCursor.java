@@ -0,0 +1,68 @@
+import HashTable.HashTable;
+import HashTable.MapCursor;
+import org.junit.jupiter.api.Test;
+
+import java.util.ConcurrentModificationException;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestMapCursor {
+
+    @Test
+    void walkTest() {
+        HashTable<Integer, Long> currentTable = new HashTable<Integer, Long>();
+        Hashtable<Integer, Long> controlTable = new Hashtable<>();
+        for (int i = 0; i < 1000; i++) {
+            currentTable.put(i, (long) i);
+            controlTable.put(i, (long) i);
+        }
+        MapCursor<Integer, Long> c = currentTable.cursor();
+        assertThrows(IllegalStateException.class, c::key);
+        long total = 0;
+        int n = 0;
+        while (c.advance()) {
+            assertEquals(controlTable.get(c.key()), c.value());
+            total += c.value();
+            n++;
+        }
+        assertEquals(1000, n);
+        assertEquals(499500, total);
+        assertFalse(c.advance());
+
+        c.reset();
+        while (c.advance()) {
+            assertEquals(Long.valueOf(c.key()), c.setValue(c.value() * 2));
+            if (c.key() % 3 == 0)
+                c.remove();
+        }
+        assertEquals(666, currentTable.size());
+        for (int i = 0; i < 1000; i++)
+            assertEquals(i % 3 == 0 ? null : Long.valueOf(2L * i), currentTable.get(i));
+        assertThrows(IllegalStateException.class, c::remove);
+    }
+
+    @Test
+    void removeTest() {
+        HashTable<Integer, Long> currentTable = new HashTable<Integer, Long>();
+        for (int i = 0; i < 100; i++)
+            currentTable.put(i, (long) i);
+        MapCursor<Integer, Long> c = currentTable.cursor();
+        List<Integer> seen = new ArrayList<>();
+        while (c.advance()) {
+            seen.add(c.key());
+            c.remove();
+            assertThrows(IllegalStateException.class, c::value);
+        }
+        assertEquals(100, seen.size());
+        assertTrue(currentTable.isEmpty());
+
+        currentTable.put(1, 1L);
+        c.reset();
+        assertTrue(c.advance());
+        currentTable.put(2, 2L);
+        assertThrows(ConcurrentModificationException.class, c::advance);
+    }
+}
@@ -0,0 +1,91 @@
+import HashTable.Codec;
+import HashTable.MappedHashTable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestMappedHashTable {
+
+    @Test
+    void putGetRemoveTest(@TempDir Path dir) throws IOException {
+        try (MappedHashTable<Integer, String> currentTable =
+                     MappedHashTable.open(dir.resolve("table.map"), Codec.INTEGER, Codec.STRING)) {
+            Hashtable<Integer, String> controlTable = new Hashtable<>();
+            Random random = new Random(19);
+            for (int i = 0; i < 20000; i++) {
+                int key = random.nextInt(5000);
+                String value = "v" + i;
+                assertEquals(controlTable.put(key, value) != null, currentTable.put(key, value));
+                int other = random.nextInt(5000);
+                if (i % 3 == 0)
+                    assertEquals(controlTable.remove(other) != null, currentTable.remove(other));
+                assertEquals(controlTable.get(other), currentTable.get(other));
+                assertEquals(controlTable.containsKey(other), currentTable.containsKey(other));
+            }
+            assertEquals(controlTable.size(), currentTable.size());
+            Map<Integer, String> copy = new HashMap<>();
+            currentTable.forEach(copy::put);
+            assertEquals(controlTable, copy);
+        }
+    }
+
+    @Test
+    void reopenTest(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("table.map");
+        Map<String, String> controlTable = new HashMap<>();
+        try (MappedHashTable<String, String> currentTable = MappedHashTable.open(file, Codec.STRING, Codec.STRING)) {
+            for (int i = 0; i < 30000; i++) {
+                currentTable.put("key" + i, "value" + i);
+                controlTable.put("key" + i, "value" + i);
+            }
+            for (int i = 0; i < 30000; i += 7) {
+                currentTable.remove("key" + i);
+                controlTable.remove("key" + i);
+            }
+            currentTable.put("key1", "changed");
+            controlTable.put("key1", "changed");
+            currentTable.force();
+        }
+
+        try (MappedHashTable<String, String> currentTable = MappedHashTable.open(file, Codec.STRING, Codec.STRING)) {
+            assertEquals(controlTable.size(), currentTable.size());
+            for (Map.Entry<String, String> e : controlTable.entrySet())
+                assertEquals(e.getValue(), currentTable.get(e.getKey()));
+            assertNull(currentTable.get("key0"));
+            // после переоткрытия таблица продолжает расти
+            for (int i = 30000; i < 40000; i++)
+                currentTable.put("key" + i, "value" + i);
+            assertEquals(controlTable.size() + 10000, currentTable.size());
+            assertEquals("value39999", currentTable.get("key39999"));
+        }
+    }
+
+    @Test
+    void badFileTest(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("junk.map");
+        Files.write(file, new byte[100]);
+        assertThrows(IOException.class, () -> MappedHashTable.open(file, Codec.STRING, Codec.STRING));
+
+        MappedHashTable<String, String> currentTable = MappedHashTable.open(dir.resolve("t.map"), Codec.STRING, Codec.STRING);
+        currentTable.close();
+        currentTable.close();
+        assertThrows(IllegalStateException.class, () -> currentTable.get("a"));
+
+        // испорченная загрузка в заголовке
+        Path corrupt = dir.resolve("corrupt.map");
+        MappedHashTable.open(corrupt, Codec.STRING, Codec.STRING).close();
+        try (FileChannel channel = FileChannel.open(corrupt, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putFloat(0, Float.NaN), 40);
+        }
+        IOException e = assertThrows(IOException.class, () -> MappedHashTable.open(corrupt, Codec.STRING, Codec.STRING));
+        assertTrue(e.getMessage().startsWith("Corrupt"));
+    }
+}
@@ -0,0 +1,71 @@
+import HashTable.OffHeapHashTable;
+import org.junit.jupiter.api.Test;
+import java.nio.ByteBuffer;
+import java.util.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestOffHeapHashTable {
+
+    private static byte[] bytes(long v) {
+        return ByteBuffer.allocate(8).putLong(v).array();
+    }
+
+    @Test
+    void putGetRemoveTest() {
+        try (OffHeapHashTable currentTable = new OffHeapHashTable(8, 8)) {
+            Hashtable<Long, Long> controlTable = new Hashtable<>();
+            Random random = new Random(5);
+            byte[] out = new byte[8];
+            for (int i = 0; i < 10000; i++) {
+                long key = random.nextInt(3000);
+                assertEquals(controlTable.put(key, (long) i) != null, currentTable.put(bytes(key), bytes(i)));
+                long other = random.nextInt(3000);
+                if (i % 3 == 0)
+                    assertEquals(controlTable.remove(other) != null, currentTable.remove(bytes(other)));
+                assertEquals(controlTable.containsKey(other), currentTable.get(bytes(other), out));
+                if (controlTable.containsKey(other))
+                    assertEquals((long) controlTable.get(other), ByteBuffer.wrap(out).getLong());
+            }
+            assertEquals(controlTable.size(), currentTable.size());
+            Map<Long, Long> copy = new HashMap<>();
+            currentTable.forEach((k, v) -> copy.put(k.getLong(k.position()), v.getLong(v.position())));
+            assertEquals(controlTable, copy);
+        }
+    }
+
+    @Test
+    void closeTest() {
+        OffHeapHashTable currentTable = new OffHeapHashTable(4, 0);
+        currentTable.put(new byte[]{1, 2, 3, 4}, new byte[0]);
+        assertTrue(currentTable.containsKey(new byte[]{1, 2, 3, 4}));
+        currentTable.close();
+        assertThrows(IllegalStateException.class, () -> currentTable.containsKey(new byte[]{1, 2, 3, 4}));
+        try (OffHeapHashTable other = new OffHeapHashTable(4, 4)) {
+            assertThrows(IllegalArgumentException.class, () -> other.put(new byte[3], new byte[4]));
+        }
+        // ячейка больше сегмента
+        assertThrows(IllegalArgumentException.class, () -> new OffHeapHashTable(1 << 29, 1 << 29));
+        assertThrows(IllegalArgumentException.class, () -> new OffHeapHashTable(Integer.MAX_VALUE, 1));
+    }
+
+    @Test
+    void forEachTest() {
+        List<ByteBuffer> kept = new ArrayList<>();
+        try (OffHeapHashTable currentTable = new OffHeapHashTable(8, 8)) {
+            for (long i = 0; i < 8; i++)
+                currentTable.put(bytes(i), bytes(-i));
+            currentTable.forEach((k, v) -> {
+                assertFalse(k.isDirect());
+                kept.add(v);
+            });
+            // вставка из action перехеширует таблицу, обход обрывается до чтения старых сегментов
+            assertThrows(java.util.ConcurrentModificationException.class, () -> currentTable.forEach((k, v) -> {
+                for (long i = 100; i < 200; i++)
+                    currentTable.put(bytes(i), bytes(i));
+            }));
+        }
+        // буферы из обхода указывают на кучу, а не на освобождённые сегменты
+        assertEquals(8, kept.size());
+        kept.get(0).getLong(0);
+    }
+}
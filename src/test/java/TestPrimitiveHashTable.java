@@ -0,0 +1,92 @@
+import HashTable.Geometry;
+import HashTable.IntIntHashTable;
+import HashTable.IntObjHashTable;
+import HashTable.LongLongHashTable;
+import HashTable.LongObjHashTable;
+import HashTable.SizingPolicy;
+import org.junit.jupiter.api.Test;
+import java.util.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestPrimitiveHashTable {
+
+    @Test
+    void fullTableTest() {
+        IntIntHashTable currentTable = new IntIntHashTable(11, 0.75f, new SizingPolicy() {
+            public int capacityFor(int requested) {
+                return 11;
+            }
+
+            public int grow(int capacity) {
+                return capacity;
+            }
+
+            public Geometry geometry(int capacity) {
+                return SizingPolicy.PRIME.geometry(capacity);
+            }
+        });
+        for (int i = 1; i <= 10; i++)
+            currentTable.put(i, i);
+        assertThrows(IllegalStateException.class, () -> currentTable.put(11, 11));
+        // промах находит последнюю пустую ячейку, а не чужую запись
+        assertEquals(-1, currentTable.getOrDefault(12, -1));
+        assertFalse(currentTable.containsKey(12));
+        assertEquals(5, currentTable.remove(5));
+        assertEquals(0, currentTable.put(12, 12));
+        assertEquals(12, currentTable.get(12));
+        assertEquals(10, currentTable.size());
+    }
+
+    @Test
+    void intIntTest() {
+        IntIntHashTable currentTable = new IntIntHashTable();
+        Hashtable<Integer, Integer> controlTable = new Hashtable<>();
+        Random random = new Random(11);
+        for (int i = 0; i < 20000; i++) {
+            int key = random.nextInt(4000) - 2000;
+            Integer previous = controlTable.put(key, i);
+            assertEquals(previous == null ? 0 : previous, currentTable.put(key, i));
+            int other = random.nextInt(4000) - 2000;
+            if (i % 2 == 0) {
+                Integer removed = controlTable.remove(other);
+                assertEquals(removed == null ? 0 : removed, currentTable.remove(other));
+            }
+            assertEquals(controlTable.getOrDefault(other, -1), currentTable.getOrDefault(other, -1));
+        }
+        assertEquals(controlTable.size(), currentTable.size());
+        Map<Integer, Integer> copy = new HashMap<>();
+        currentTable.forEach(copy::put);
+        assertEquals(controlTable, copy);
+    }
+
+    @Test
+    void zeroKeyTest() {
+        IntObjHashTable<String> currentTable = new IntObjHashTable<String>();
+        assertNull(currentTable.get(0));
+        assertNull(currentTable.put(0, "zero"));
+        assertTrue(currentTable.containsKey(0));
+        assertTrue(currentTable.containsValue("zero"));
+        assertEquals(1, currentTable.size());
+        assertEquals("zero", currentTable.remove(0));
+        assertEquals(0, currentTable.size());
+        assertThrows(NullPointerException.class, () -> currentTable.put(1, null));
+    }
+
+    @Test
+    void longTest() {
+        LongLongHashTable longs = new LongLongHashTable(11, 0.75f, SizingPolicy.POWER_OF_TWO);
+        LongObjHashTable<String> names = new LongObjHashTable<String>();
+        for (long i = 1; i <= 1000; i++) {
+            long key = i << 33;
+            longs.put(key, -i);
+            names.put(key, "id" + i);
+        }
+        assertEquals(1000, longs.size());
+        assertEquals(-500, longs.get(500L << 33));
+        assertEquals(7, longs.getOrDefault(1, 7));
+        assertEquals("id42", names.get(42L << 33));
+        assertEquals("id42", names.remove(42L << 33));
+        assertFalse(names.containsKey(42L << 33));
+        assertEquals(999, names.size());
+    }
+}
@@ -0,0 +1,90 @@
+import HashTable.ReferenceHashTable;
+import HashTable.ReferenceHashTable.Strength;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestReferenceHashTable {
+
+    // ждёт, пока сборщик уберёт недостижимое и таблица это заметит
+    private static void collect(ReferenceHashTable<?, ?> currentTable, int expectedSize) throws InterruptedException {
+        for (int i = 0; i < 100 && currentTable.size() > expectedSize; i++) {
+            System.gc();
+            Thread.sleep(10);
+            currentTable.cleanUp();
+        }
+    }
+
+    @Test
+    void weakKeysTest() throws InterruptedException {
+        ReferenceHashTable<Object, String> currentTable = ReferenceHashTable.weakKeys();
+        List<Object> kept = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            String key = new String("key" + i);
+            if (i % 2 == 0)
+                kept.add(key);
+            currentTable.put(key, "value" + i);
+        }
+        // ключи сравниваются по equals, не по ссылке
+        assertEquals("value2", currentTable.get("key2"));
+        assertEquals("value0", currentTable.put(new String("key0"), "zero"));
+
+        collect(currentTable, kept.size());
+        assertEquals(kept.size(), currentTable.size());
+        for (int i = 0; i < 1000; i++)
+            assertEquals(i % 2 == 0, currentTable.containsKey("key" + i));
+        Map<Object, String> copy = new HashMap<>();
+        currentTable.forEach(copy::put);
+        assertEquals(kept.size(), copy.size());
+        assertEquals("zero", copy.get("key0"));
+        assertEquals("value4", currentTable.remove("key4"));
+        assertEquals(kept.size() - 1, currentTable.size());
+    }
+
+    @Test
+    void weakValuesTest() throws InterruptedException {
+        ReferenceHashTable<Integer, Object> currentTable = ReferenceHashTable.weakValues();
+        List<Object> kept = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            Object value = new int[]{i};
+            if (i % 3 == 0)
+                kept.add(value);
+            currentTable.put(i, value);
+        }
+        collect(currentTable, kept.size());
+        assertEquals(kept.size(), currentTable.size());
+        for (int i = 0; i < 1000; i++) {
+            Object value = currentTable.get(i);
+            if (i % 3 == 0)
+                assertSame(kept.get(i / 3), value);
+            else
+                assertNull(value);
+        }
+
+        // новое значение не удаляется очисткой старого
+        Object fresh = new int[]{-1};
+        currentTable.put(3, new int[]{3});
+        currentTable.put(3, fresh);
+        collect(currentTable, kept.size());
+        assertSame(fresh, currentTable.get(3));
+    }
+
+    @Test
+    void softValuesTest() throws InterruptedException {
+        ReferenceHashTable<String, byte[]> currentTable = ReferenceHashTable.softValues();
+        assertEquals(Strength.SOFT, currentTable.valueStrength());
+        for (int i = 0; i < 100; i++)
+            currentTable.put("k" + i, new byte[1024]);
+        // мягкие ссылки живут, пока памяти хватает
+        System.gc();
+        currentTable.cleanUp();
+        assertEquals(100, currentTable.size());
+        assertNotNull(currentTable.get("k5"));
+        assertNotNull(currentTable.remove("k5"));
+        assertNull(currentTable.get("k5"));
+        currentTable.clear();
+        assertTrue(currentTable.isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> new ReferenceHashTable<>(Strength.SOFT, Strength.STRONG));
+    }
+}
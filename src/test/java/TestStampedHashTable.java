@@ -0,0 +1,120 @@
+import HashTable.StampedHashTable;
+import org.junit.jupiter.api.Test;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestStampedHashTable {
+
+    @Test
+    void readersDuringWritesTest() throws Exception {
+        StampedHashTable<Integer, Integer> currentTable = new StampedHashTable<Integer, Integer>();
+        for (int i = 0; i < 1000; i++)
+            currentTable.put(i, i);
+
+        AtomicBoolean done = new AtomicBoolean();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<?>> readers = new ArrayList<>();
+        for (int t = 0; t < 3; t++) {
+            readers.add(pool.submit(() -> {
+                Random random = new Random();
+                while (!done.get()) {
+                    int key = random.nextInt(1000);
+                    // ключи до 1000 писатель не трогает
+                    assertEquals(key, currentTable.get(key));
+                    assertTrue(currentTable.containsKey(key));
+                }
+            }));
+        }
+        Map<Integer, Integer> batch = new HashMap<>();
+        for (int round = 0; round < 50; round++) {
+            batch.clear();
+            for (int i = 0; i < 1000; i++)
+                batch.put(1000 + round * 1000 + i, i);
+            currentTable.putAll(batch);
+            for (int i = 0; i < 500; i++)
+                currentTable.remove(1000 + round * 1000 + i);
+        }
+        done.set(true);
+        for (Future<?> f : readers)
+            f.get();
+        pool.shutdown();
+        assertEquals(1000 + 50 * 500, currentTable.size());
+    }
+
+    @Test
+    void incrementalRehashTest() {
+        StampedHashTable<Integer, Integer> currentTable = new StampedHashTable<Integer, Integer>();
+        assertThrows(UnsupportedOperationException.class, () -> currentTable.setIncrementalRehash(4));
+    }
+
+    @Test
+    void callbackTest() {
+        // чтение из функции под блокировкой записи не должно ждать само себя
+        StampedHashTable<Integer, Integer> currentTable = new StampedHashTable<Integer, Integer>();
+        for (int i = 0; i < 100; i++)
+            currentTable.put(i, i);
+        assertTimeoutPreemptively(java.time.Duration.ofSeconds(10), () -> {
+            assertEquals(Integer.valueOf(1), currentTable.computeIfAbsent(100, k -> currentTable.get(1)));
+            assertEquals(Integer.valueOf(2), currentTable.computeIfPresent(100, (k, v) -> v + currentTable.get(1)));
+            assertEquals(Integer.valueOf(3), currentTable.compute(100, (k, v) -> currentTable.containsKey(3) ? 3 : 0));
+            assertEquals(Integer.valueOf(7), currentTable.merge(100, 4, (a, b) -> a + b));
+            currentTable.replaceAll((k, v) -> currentTable.get(k) + 1);
+            assertEquals(Integer.valueOf(1), currentTable.get(0));
+            currentTable.replaceAll(1, (k, v) -> currentTable.get(k) - 1);
+            assertEquals(Integer.valueOf(0), currentTable.get(0));
+            // изменение из функции - как в HashTable
+            assertThrows(ConcurrentModificationException.class,
+                    () -> currentTable.computeIfAbsent(200, k -> currentTable.put(300, 0)));
+            int[] sum = new int[1];
+            currentTable.forEach((k, v) -> sum[0] += currentTable.get(k));
+            currentTable.forEach(1, (k, v) -> assertTrue(currentTable.containsKey(k)));
+            assertTrue(sum[0] > 0);
+            // запись под своей же блокировкой чтения не ждёт вечно
+            assertThrows(IllegalStateException.class, () -> currentTable.forEach((k, v) -> currentTable.put(k, v)));
+            assertThrows(IllegalStateException.class, () -> currentTable.forEach(1, (k, v) -> currentTable.remove(k)));
+            currentTable.put(400, 400);
+        });
+        assertEquals(Integer.valueOf(400), currentTable.get(400));
+    }
+
+    @Test
+    void snapshotTest() throws Exception {
+        StampedHashTable<Integer, Integer> currentTable = new StampedHashTable<Integer, Integer>();
+        for (int i = 0; i < 1000; i++)
+            currentTable.put(i, i);
+        assertThrows(UnsupportedOperationException.class, currentTable::cursor);
+        assertThrows(UnsupportedOperationException.class, () -> currentTable.setStatsEnabled(true));
+        currentTable.setStatsEnabled(false);
+
+        // снимки под блокировкой чтения не видят писателя посередине
+        AtomicBoolean done = new AtomicBoolean();
+        Thread writer = new Thread(() -> {
+            for (int i = 1000; !done.get(); i++) {
+                currentTable.put(i, i);
+                currentTable.remove(i);
+            }
+        });
+        writer.start();
+        try {
+            for (int round = 0; round < 200; round++) {
+                Map<Integer, Integer> frozen = currentTable.freeze();
+                assertTrue(frozen.size() == 1000 || frozen.size() == 1001);
+                assertEquals(Integer.valueOf(999), frozen.get(999));
+                int keys = 0;
+                for (Enumeration<Integer> e = currentTable.keys(); e.hasMoreElements(); e.nextElement())
+                    keys++;
+                assertTrue(keys == 1000 || keys == 1001);
+                Enumeration<Integer> values = currentTable.elements();
+                currentTable.put(-1, -1);
+                currentTable.remove(-1);
+                while (values.hasMoreElements())
+                    assertNotNull(values.nextElement());
+            }
+        } finally {
+            done.set(true);
+            writer.join();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+import HashTable.SwissHashTable;
+import org.junit.jupiter.api.Test;
+import java.util.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestSwissHashTable {
+
+    @Test
+    void putGetRemoveTest() {
+        SwissHashTable<Integer, Integer> currentTable = new SwissHashTable<Integer, Integer>();
+        Hashtable<Integer, Integer> controlTable = new Hashtable<>();
+        Random random = new Random(24);
+        for (int i = 0; i < 50000; i++) {
+            int key = random.nextInt(6000) - 3000;
+            assertEquals(controlTable.put(key, i), currentTable.put(key, i));
+            int other = random.nextInt(6000) - 3000;
+            if (i % 2 == 0)
+                assertEquals(controlTable.remove(other), currentTable.remove(other));
+            assertEquals(controlTable.get(other), currentTable.get(other));
+            assertEquals(controlTable.containsKey(other), currentTable.containsKey(other));
+        }
+        assertEquals(controlTable.size(), currentTable.size());
+        assertEquals(controlTable, currentTable);
+        assertEquals(currentTable, controlTable);
+    }
+
+    @Test
+    void collidingHashTest() {
+        // одинаковый hashCode - одинаковые 7 бит, проверка ключей всё равно нужна
+        SwissHashTable<String, Integer> currentTable = new SwissHashTable<String, Integer>(4);
+        List<String> keys = Arrays.asList("Aa", "BB", "AaAa", "AaBB", "BBAa", "BBBB");
+        for (int i = 0; i < 200; i++) {
+            for (String k : keys)
+                currentTable.put(k + i, i);
+        }
+        assertEquals(1200, currentTable.size());
+        for (int i = 0; i < 200; i++) {
+            for (String k : keys)
+                assertEquals(Integer.valueOf(i), currentTable.get(k + i));
+        }
+        assertNull(currentTable.get("Bb0"));
+    }
+
+    @Test
+    void iteratorRemoveTest() {
+        SwissHashTable<Integer, Integer> currentTable = new SwissHashTable<Integer, Integer>();
+        for (int i = 0; i < 1000; i++)
+            currentTable.put(i, i);
+        Set<Integer> seen = new HashSet<>();
+        Iterator<Map.Entry<Integer, Integer>> it = currentTable.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, Integer> e = it.next();
+            assertTrue(seen.add(e.getKey()));
+            if (e.getValue() % 2 == 0)
+                it.remove();
+            else
+                e.setValue(-e.getValue());
+        }
+        assertEquals(1000, seen.size());
+        assertEquals(500, currentTable.size());
+        for (int i = 0; i < 1000; i++)
+            assertEquals(i % 2 == 0 ? null : -i, currentTable.get(i));
+        assertThrows(NullPointerException.class, () -> currentTable.put(1, null));
+        currentTable.clear();
+        assertTrue(currentTable.isEmpty());
+        assertNull(currentTable.get(1));
+    }
+}